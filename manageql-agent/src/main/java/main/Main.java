@@ -27,12 +27,11 @@ import java.util.LinkedList;
 import java.util.Properties;
 
 import javax.management.MBeanServerConnection;
-import javax.management.remote.JMXConnector;
-import javax.management.remote.JMXConnectorFactory;
 import javax.management.remote.JMXServiceURL;
 
 import org.teiid.manageql.agent.ManageQLAgent;
 import org.teiid.manageql.server.ManageQLServer;
+import org.teiid.manageql.server.jmx.JmxConnectionPool;
 
 import net.bytebuddy.agent.ByteBuddyAgent;
 
@@ -77,8 +76,54 @@ public class Main {
         if( args.isEmpty() ) {
             exitWithInvalidUsage("the jmx host:port url argument is missing.");
         }
-        String hostAndPort = args.removeFirst();
 
+        // every remaining argument is a node, a comma separated list is also accepted
+        int[] poolSize = {JmxConnectionPool.DEFAULT_SIZE};
+        mqlc.configureInteger("connections", x -> poolSize[0] = x);
+        ManageQLServer server = new ManageQLServer();
+        while (!args.isEmpty()) {
+            for (String hostAndPort : args.removeFirst().split(",")) {
+                if (hostAndPort.isEmpty()) {
+                    continue;
+                }
+                server.addMBeanServerConnection(hostAndPort, connect(hostAndPort, poolSize[0]));
+            }
+        }
+
+        mqlc.configureInteger("psql-port", server::setPsqlPortNumber);
+        mqlc.configureInteger("fetch-threads", server::setFetchThreads);
+        mqlc.configureInteger("fetch-window", server::setFetchWindow);
+        mqlc.configureInteger("max-threads", server::setMaxThreads);
+        mqlc.configureInteger("max-active-plans", server::setMaxActivePlans);
+        mqlc.configureInteger("max-async-threads", server::setMaxAsyncThreads);
+        mqlc.configureBoolean("lazy-metadata", server::setLazyMetadata);
+        mqlc.configureBoolean("grouped-tables", server::setGroupedTables);
+        mqlc.configureLong("schema-update-window", server::setSchemaUpdateWindow);
+        mqlc.configureBoolean("virtual-threads", server::setVirtualThreads);
+        mqlc.configureInteger("node-timeout", server::setNodeTimeout);
+        mqlc.configureInteger("coalesce-window", server::setCoalesceWindow);
+        mqlc.configureLong("attribute-timeout", server::setAttributeTimeout);
+        mqlc.configure("history", server::setHistory);
+        mqlc.configureInteger("history-interval", server::setHistoryInterval);
+        mqlc.configureInteger("history-capacity", server::setHistoryCapacity);
+        mqlc.configure("notifications", server::setNotifications);
+        mqlc.configureInteger("notification-capacity", server::setNotificationCapacity);
+        mqlc.configureInteger("max-calls-per-second", server::setMaxCallsPerSecond);
+        mqlc.configureInteger("max-beans-per-query", server::setMaxBeansPerQuery);
+        mqlc.configureLong("max-bytes-per-query", server::setMaxBytesPerQuery);
+        mqlc.configureLong("query-timeout", server::setQueryTimeout);
+        mqlc.configureLong("allocation-budget", server::setAllocationBudget);
+        server.start();
+
+        // Lets just wait forever..
+        String mutex = "mutex";
+        synchronized (mutex) {
+            mutex.wait();
+        }
+
+    }
+
+    private static MBeanServerConnection connect(String hostAndPort, int poolSize) {
         JMXServiceURL url = null;
         try {
             url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://"+hostAndPort+"/jmxrmi");
@@ -88,23 +133,14 @@ public class Main {
 
         MBeanServerConnection connection = null;
         try {
-            JMXConnector jmxc = JMXConnectorFactory.connect(url, null);
-            connection = jmxc.getMBeanServerConnection();
+            JmxConnectionPool pool = new JmxConnectionPool(url, null, poolSize);
+            pool.connect();
+            connection = pool.getConnection();
         } catch (IOException e) {
-            System.err.println("could not connect to JMX: " + e);
+            System.err.println("could not connect to JMX " + hostAndPort + ": " + e);
             System.exit(1);
         }
-
-        ManageQLServer server = new ManageQLServer();
-        server.setMBeanServerConnection(connection);
-        server.start();
-
-        // Lets just wait forever..
-        String mutex = "mutex";
-        synchronized (mutex) {
-            mutex.wait();
-        }
-
+        return connection;
     }
 
     private static void start(ManageQLConfig mqlc, LinkedList<String> args) throws URISyntaxException {
@@ -146,16 +182,58 @@ public class Main {
         System.err.println();
         System.err.println("commands:");
         System.err.println();
-        System.err.println("   gateway <jmx host:port>   Runs as a gateway server the connects to a remote JMX server");
+        System.err.println("   gateway <jmx host:port>...  Runs as a gateway server the connects to one or more remote JMX");
+        System.err.println("                             servers, with more than one each table has a \"$Node\" column");
         System.err.println("   start <pid>               Starts the server as an agent on a running JVM");
         System.err.println("   stop <pid>                Stops the server running as an agent on a running JVM");
         System.err.println();
         System.err.println("options:");
         System.err.println("   --psql-port=<port>    Configures the psql port that listens for connections");
+        System.err.println("   --fetch-threads=<n>   Number of threads fetching MBean attributes concurrently, 0 fetches");
+        System.err.println("                         on the query thread (default 8 for gateway, 0 for agent)");
+        System.err.println("   --fetch-window=<n>    Number of MBeans to read ahead when fetching concurrently (default 64)");
+        System.err.println("   --max-threads=<n>     Maximum number of query engine threads (default 8)");
+        System.err.println("   --max-active-plans=<n>  Maximum number of queries processed concurrently, others are");
+        System.err.println("                         queued (default 8)");
+        System.err.println("   --max-async-threads=<n>  Maximum number of engine threads for asynchronous work (default 2)");
+        System.err.println("   --lazy-metadata       Only define tables for MBeans as they are first queried rather than");
+        System.err.println("                         for every MBean at startup");
+        System.err.println("   --grouped-tables      Define a table for each MBean domain and type, such as");
+        System.err.println("                         \"jmx.java.lang:type=MemoryPool,*\", rather than for every MBean");
+        System.err.println("   --schema-update-window=<ms>  Milliseconds MBean registrations are collected for before");
+        System.err.println("                         their tables are added or removed (default 1000)");
+        System.err.println("   --virtual-threads     On Java 21 or later, makes the remote JMX calls on virtual threads");
+        System.err.println("   --connections=<n>     Number of JMX connections to each node in gateway mode, lost");
+        System.err.println("                         connections are reconnected (default 2)");
+        System.err.println("   --node-timeout=<ms>   Milliseconds to wait for each node in gateway mode, the rows of");
+        System.err.println("                         slower nodes are omitted with a warning (default 30000)");
+        System.err.println("   --coalesce-window=<ms>  Milliseconds a remote JMX result may be shared by queries for the");
+        System.err.println("                         same beans, 0 only shares calls in flight (default 0)");
+        System.err.println("   --attribute-timeout=<ms>  Milliseconds to wait for the attributes of an MBean, slower");
+        System.err.println("                         attributes are null with a warning (default no limit)");
+        System.err.println("   --thread-max-depth=<n>  Stack frames read of each thread for the jmx_thread_frames");
+        System.err.println("                         table in agent mode (default the whole stack)");
+        System.err.println("   --history=<spec>      Samples numeric attributes into the jmx_history table, the spec is");
+        System.err.println("                         pattern@attribute|attribute;pattern@attribute, for example");
+        System.err.println("                         java.lang:type=Memory@HeapMemoryUsage.used|NonHeapMemoryUsage.used");
+        System.err.println("   --history-interval=<ms>   Milliseconds between samples (default 10000)");
+        System.err.println("   --history-capacity=<n>    Number of samples retained, about 20 bytes each (default 100000)");
+        System.err.println("   --notifications=<patterns>  Records the notifications of the MBeans matching the patterns,");
+        System.err.println("                         separated by ;, in the jmx_notifications table");
+        System.err.println("   --notification-capacity=<n>  Number of notifications retained (default 10000)");
+        System.err.println("   --max-calls-per-second=<n>  JMX calls per second across all queries, further calls");
+        System.err.println("                         are delayed (default no limit)");
+        System.err.println("   --max-beans-per-query=<n>  MBeans a query may read before it fails (default no limit)");
+        System.err.println("   --max-bytes-per-query=<n>  Estimated bytes of attribute values a query may read before");
+        System.err.println("                         it fails (default no limit)");
+        System.err.println("   --query-timeout=<ms>  Milliseconds a query may spend reading MBeans (default no limit)");
+        System.err.println("   --allocation-budget=<n>  Bytes a query may allocate while reading MBeans before it");
+        System.err.println("                         fails (default no limit)");
         System.err.println();
         System.err.println("examples: ");
         System.err.println();
         System.err.println("   java -jar manageql.jar gateway localhost:1099");
+        System.err.println("   java -jar manageql.jar gateway app1:1099 app2:1099 app3:1099");
         System.err.println("   java -jar manageql.jar start 1521 --psql-port=7777");
         System.err.println("   java -jar manageql.jar stop 1521");
         System.err.println();
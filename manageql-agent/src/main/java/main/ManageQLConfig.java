@@ -102,4 +102,12 @@ public class ManageQLConfig {
         configure(key, x->target.accept(Integer.parseInt(x)));
     }
 
+    public void configureLong(String key, Consumer<Long> target) {
+        configure(key, x->target.accept(Long.parseLong(x)));
+    }
+
+    public void configureBoolean(String key, Consumer<Boolean> target) {
+        configure(key, x->target.accept(Boolean.parseBoolean(x)));
+    }
+
 }
@@ -59,6 +59,27 @@ public class ManageQLAgent {
         if( server == null ) {
             server = new ManageQLServer();
             configureInteger(config, "psql-port", server::setPsqlPortNumber);
+            configureInteger(config, "fetch-threads", server::setFetchThreads);
+            configureInteger(config, "fetch-window", server::setFetchWindow);
+            configureInteger(config, "max-threads", server::setMaxThreads);
+            configureInteger(config, "max-active-plans", server::setMaxActivePlans);
+            configureInteger(config, "max-async-threads", server::setMaxAsyncThreads);
+            configureBoolean(config, "lazy-metadata", server::setLazyMetadata);
+            configureBoolean(config, "grouped-tables", server::setGroupedTables);
+            configureLong(config, "schema-update-window", server::setSchemaUpdateWindow);
+            configureBoolean(config, "virtual-threads", server::setVirtualThreads);
+            configure(config, "history", server::setHistory);
+            configureInteger(config, "history-interval", server::setHistoryInterval);
+            configureInteger(config, "history-capacity", server::setHistoryCapacity);
+            configure(config, "notifications", server::setNotifications);
+            configureInteger(config, "notification-capacity", server::setNotificationCapacity);
+            configureInteger(config, "max-calls-per-second", server::setMaxCallsPerSecond);
+            configureInteger(config, "max-beans-per-query", server::setMaxBeansPerQuery);
+            configureLong(config, "max-bytes-per-query", server::setMaxBytesPerQuery);
+            configureLong(config, "query-timeout", server::setQueryTimeout);
+            configureLong(config, "allocation-budget", server::setAllocationBudget);
+            configureLong(config, "attribute-timeout", server::setAttributeTimeout);
+            configureInteger(config, "thread-max-depth", server::setThreadMaxDepth);
             server.start();
             String driverURL = "jdbc:postgresql://localhost:" + server.getPort(0) + "/manageql";
             System.setProperty(AGENT_KEY, driverURL);
@@ -77,6 +98,14 @@ public class ManageQLAgent {
         configure(config, key, x->target.accept(Integer.parseInt(x)));
     }
 
+    private static void configureLong(ManageQLConfig config, String key, Consumer<Long> target) {
+        configure(config, key, x->target.accept(Long.parseLong(x)));
+    }
+
+    private static void configureBoolean(ManageQLConfig config, String key, Consumer<Boolean> target) {
+        configure(config, key, x->target.accept(Boolean.parseBoolean(x)));
+    }
+
     synchronized private static void stop() {
         if( server !=null ) {
             server.stop();
@@ -0,0 +1,139 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.manageql.server.ManageQLServer;
+
+/**
+ * Many pg protocol clients querying a remote node with a few milliseconds of latency per call,
+ * with the JMX calls made on the platform thread pools or on virtual threads.  Each invocation
+ * is a round of one query per client, all issued at once.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConnectionScalabilityBenchmark {
+
+    private static final long CALL_LATENCY_MILLIS = 5;
+    private static final String QUERY = "SELECT \"Count\" FROM " + SyntheticBeans.TABLE + " WHERE \"$name\" = '1'";
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"100", "500"})
+    public int clients;
+
+    private MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    private ManageQLServer server;
+    private List<Connection> connections = new ArrayList<Connection>();
+    private ExecutorService clientExecutor;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SyntheticBeans.register(mbs, 10);
+        // a remote node, as seen by a gateway
+        MBeanServerConnection remote = (MBeanServerConnection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    Thread.sleep(CALL_LATENCY_MILLIS);
+                    try {
+                        return method.invoke(mbs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.setMBeanServerConnection(remote);
+        server.setVirtualThreads(threads.equals("virtual"));
+        server.setMaxThreads(64);
+        server.setMaxActivePlans(64);
+        server.start();
+
+        Properties properties = new Properties();
+        properties.setProperty("user", "manageql");
+        properties.setProperty("password", "manageql");
+        for (int i = 0; i < clients; i++) {
+            connections.add(DriverManager.getConnection("jdbc:postgresql://localhost:" + server.getPort(0) + "/manageql",
+                    properties));
+        }
+        clientExecutor = Executors.newFixedThreadPool(clients);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        clientExecutor.shutdownNow();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        server.stop();
+        SyntheticBeans.unregister(mbs);
+    }
+
+    @Benchmark
+    public long queryRound() throws Exception {
+        List<Future<Long>> results = new ArrayList<Future<Long>>(clients);
+        for (final Connection connection : connections) {
+            results.add(clientExecutor.submit(() -> {
+                try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(QUERY)) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }));
+        }
+        long sum = 0;
+        for (Future<Long> result : results) {
+            sum += result.get();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.core.types.JsonType;
+import org.teiid.manageql.server.jmx.JmxJsonUtil;
+import org.teiid.manageql.server.jmx.ValueConverters;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Converts attribute values as read from an MXBean to the column types, which is the work of
+ * JmxResultSetExecution.retrieveValue, and serializes the open types to json.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ConversionBenchmark {
+
+    private MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    private Long count;
+    private long[] samples;
+    private String[] tags;
+    private CompositeData usage;
+    private TabularData properties;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SyntheticBeans.register(mbs, 1);
+        ObjectName name = SyntheticBeans.name(0);
+        count = (Long)mbs.getAttribute(name, "Count");
+        samples = (long[])mbs.getAttribute(name, "Samples");
+        tags = (String[])mbs.getAttribute(name, "Tags");
+        usage = (CompositeData)mbs.getAttribute(name, "Usage");
+        properties = (TabularData)mbs.getAttribute(name, "Properties");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        SyntheticBeans.unregister(mbs);
+    }
+
+    @Benchmark
+    public Object convertLong() throws TranslatorException {
+        return ValueConverters.convert(count, Long.class);
+    }
+
+    @Benchmark
+    public Object convertLongToString() throws TranslatorException {
+        return ValueConverters.convert(count, String.class);
+    }
+
+    @Benchmark
+    public Object convertLongArray() throws TranslatorException {
+        return ValueConverters.convert(samples, Long[].class);
+    }
+
+    @Benchmark
+    public Object convertStringArray() throws TranslatorException {
+        return ValueConverters.convert(tags, String[].class);
+    }
+
+    @Benchmark
+    public Object convertCompositeData() throws Exception {
+        // the json is produced as the value is read
+        return ((JsonType)ValueConverters.convert(usage, JsonType.class)).getSubString(1, 1);
+    }
+
+    @Benchmark
+    public String jsonCompositeData() {
+        return JmxJsonUtil.toJson(usage);
+    }
+
+    @Benchmark
+    public String jsonTabularData() {
+        return JmxJsonUtil.toJson(properties);
+    }
+}
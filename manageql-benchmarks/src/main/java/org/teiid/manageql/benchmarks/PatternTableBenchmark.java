@@ -0,0 +1,177 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.manageql.server.ManageQLServer;
+
+/**
+ * The cost of defining a pattern table for a statement, which is DynamicTableBuilder.defineGroup
+ * calling get_dynamic_table_ddl and creating the session's temporary table.  The statements match
+ * no rows, so that reading the beans is not measured, see QueryBenchmark for that.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PatternTableBenchmark {
+
+    private static final String PATTERN_TABLE = "SELECT \"$ObjectName\" FROM " + SyntheticBeans.TABLE + " WHERE 1 = 0";
+    private static final MBeanServer MBS = ManagementFactory.getPlatformMBeanServer();
+
+    /**
+     * Registers or unregisters a bean outside of the pattern before each statement, so that the
+     * table is checked with get_dynamic_table_ddl and kept as its ddl is unchanged
+     */
+    @State(Scope.Thread)
+    public static class Registration {
+        private final ObjectName name;
+        private boolean registered;
+
+        public Registration() {
+            try {
+                name = new ObjectName("manageql.bench:type=Other");
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void toggle() throws JMException {
+            registered = toggle(name, registered);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws JMException {
+            if (registered && MBS.isRegistered(name)) {
+                MBS.unregisterMBean(name);
+            }
+        }
+
+        static boolean toggle(ObjectName name, boolean registered) throws JMException {
+            if (registered) {
+                MBS.unregisterMBean(name);
+                return false;
+            }
+            MBS.registerMBean(new SyntheticBeans.Synthetic(0), name);
+            return true;
+        }
+    }
+
+    /**
+     * Registers or unregisters a bean with an extra key property in the pattern before each statement,
+     * so that the ddl changes and the table is dropped and created again
+     */
+    @State(Scope.Thread)
+    public static class ShapeChange {
+        private final ObjectName name;
+        private boolean registered;
+
+        public ShapeChange() {
+            try {
+                name = new ObjectName(SyntheticBeans.DOMAIN + ":type=Synthetic,name=extra,variant=bench");
+            } catch (JMException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void toggle() throws JMException {
+            registered = Registration.toggle(name, registered);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws JMException {
+            if (registered && MBS.isRegistered(name)) {
+                MBS.unregisterMBean(name);
+            }
+        }
+    }
+
+    @Param({"10", "1000"})
+    public int beans;
+
+    private ManageQLServer server;
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SyntheticBeans.register(MBS, beans);
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.start();
+        connection = server.getDriver().connect("jdbc:teiid:manageql", null);
+        // defines the table in the session
+        execute(PATTERN_TABLE);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        server.stop();
+        SyntheticBeans.unregister(MBS);
+    }
+
+    private boolean execute(String sql) throws SQLException {
+        try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            return rs.next();
+        }
+    }
+
+    @Benchmark
+    public boolean definedTable() throws SQLException {
+        // no registration since the table was defined, so it is reused without a call
+        return execute(PATTERN_TABLE);
+    }
+
+    @Benchmark
+    public boolean checkedTable(Registration registration) throws SQLException {
+        return execute(PATTERN_TABLE);
+    }
+
+    @Benchmark
+    public boolean rebuiltTable(ShapeChange shapeChange) throws SQLException {
+        return execute(PATTERN_TABLE);
+    }
+}
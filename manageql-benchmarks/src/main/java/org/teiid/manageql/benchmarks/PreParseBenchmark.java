@@ -0,0 +1,83 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.teiid.manageql.server.DynamicTableBuilder;
+import org.teiid.manageql.server.ManageQLServer;
+
+/**
+ * The cost DynamicTableBuilder adds to every statement, for statements that need no table to be
+ * defined.  Defining a pattern table is measured by PatternTableBenchmark.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreParseBenchmark {
+
+    private static final String DEFINED_TABLE = "SELECT \"SpecName\" FROM \"jmx.java.lang:type=Runtime\"";
+
+    private ManageQLServer server;
+    private DynamicTableBuilder builder;
+    private int statement;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.start();
+        builder = new DynamicTableBuilder(server);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public String noJmxTable() {
+        return builder.preParse("SELECT name FROM sys.tables WHERE schemaname = 'jmx'", null);
+    }
+
+    @Benchmark
+    public String definedTable() {
+        return builder.preParse(DEFINED_TABLE, null);
+    }
+
+    @Benchmark
+    public String definedTableUncached() {
+        // a distinct statement each time, so that it is parsed
+        return builder.preParse(DEFINED_TABLE + " WHERE \"Uptime\" > " + statement++, null);
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.teiid.manageql.server.ManageQLServer;
+
+/**
+ * Queries a synthetic MBean population through the embedded Teiid driver, which measures
+ * JmxResultSetExecution and the engine, and through the pg protocol as a client would.
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class QueryBenchmark {
+
+    private static final String SCAN_ALL = "SELECT * FROM " + SyntheticBeans.TABLE;
+    private static final String SCAN_PRIMITIVES = "SELECT \"$ObjectName\", \"Index\", \"Count\", \"Ratio\", \"Enabled\", \"Label\" FROM "
+            + SyntheticBeans.TABLE;
+    private static final String POINT_LOOKUP = "SELECT \"Count\", \"Usage\" FROM " + SyntheticBeans.TABLE
+            + " WHERE \"$name\" = '1'";
+
+    /**
+     * Counts the rows read, so that the row throughput is reported along with the query throughput
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Rows {
+        public long rows;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            rows = 0;
+        }
+    }
+
+    @Param({"100", "10000", "100000"})
+    public int beans;
+
+    private MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    private ManageQLServer server;
+    private Connection embedded;
+    private Connection pg;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        SyntheticBeans.register(mbs, beans);
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        // a table per bean would dominate the startup of the larger populations
+        server.setLazyMetadata(true);
+        server.start();
+        embedded = server.getDriver().connect("jdbc:teiid:manageql", null);
+        Properties properties = new Properties();
+        properties.setProperty("user", "manageql");
+        properties.setProperty("password", "manageql");
+        pg = DriverManager.getConnection("jdbc:postgresql://localhost:" + server.getPort(0) + "/manageql", properties);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pg.close();
+        embedded.close();
+        server.stop();
+        SyntheticBeans.unregister(mbs);
+    }
+
+    private static void consume(Connection connection, String sql, Rows rows, Blackhole bh) throws SQLException {
+        try (Statement s = connection.createStatement(); ResultSet rs = s.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    bh.consume(rs.getObject(i));
+                }
+                rows.rows++;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void scanAllColumns(Rows rows, Blackhole bh) throws SQLException {
+        consume(embedded, SCAN_ALL, rows, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void scanPrimitiveColumns(Rows rows, Blackhole bh) throws SQLException {
+        consume(embedded, SCAN_PRIMITIVES, rows, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void pgPointLookup(Rows rows, Blackhole bh) throws SQLException {
+        consume(pg, POINT_LOOKUP, rows, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void pgScanPrimitiveColumns(Rows rows, Blackhole bh) throws SQLException {
+        consume(pg, SCAN_PRIMITIVES, rows, bh);
+    }
+}
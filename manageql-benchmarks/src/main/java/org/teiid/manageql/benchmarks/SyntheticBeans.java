@@ -0,0 +1,135 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.benchmarks;
+
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers a population of synthetic MBeans with a mix of primitive, array, CompositeData and
+ * TabularData attributes, named <code>manageql.bench:type=Synthetic,name=&lt;n&gt;</code>.
+ */
+public final class SyntheticBeans {
+
+    public static final String DOMAIN = "manageql.bench";
+    public static final String PATTERN = DOMAIN + ":type=Synthetic,*";
+    public static final String TABLE = "\"jmx." + PATTERN + "\"";
+
+    public interface SyntheticMXBean {
+        int getIndex();
+        long getCount();
+        double getRatio();
+        boolean isEnabled();
+        String getLabel();
+        long[] getSamples();
+        String[] getTags();
+        // mapped to CompositeData
+        MemoryUsage getUsage();
+        // mapped to TabularData
+        Map<String, String> getProperties();
+    }
+
+    public static class Synthetic implements SyntheticMXBean {
+        private final int index;
+        private final long[] samples = new long[16];
+        private final String[] tags;
+        private final MemoryUsage usage;
+        private final Map<String, String> properties = new LinkedHashMap<String, String>();
+
+        public Synthetic(int index) {
+            this.index = index;
+            for (int i = 0; i < samples.length; i++) {
+                samples[i] = index * 31L + i;
+            }
+            this.tags = new String[] {"bench", "synthetic", "bean-" + index};
+            this.usage = new MemoryUsage(index, index * 2L, index * 4L, index * 8L);
+            for (int i = 0; i < 4; i++) {
+                properties.put("key" + i, "value" + (index + i));
+            }
+        }
+
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
+        @Override
+        public long getCount() {
+            return index * 1000L;
+        }
+
+        @Override
+        public double getRatio() {
+            return index / 7.0;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return index % 2 == 0;
+        }
+
+        @Override
+        public String getLabel() {
+            return "synthetic bean " + index;
+        }
+
+        @Override
+        public long[] getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String[] getTags() {
+            return tags;
+        }
+
+        @Override
+        public MemoryUsage getUsage() {
+            return usage;
+        }
+
+        @Override
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    private SyntheticBeans() {
+    }
+
+    public static ObjectName name(int index) throws JMException {
+        return new ObjectName(DOMAIN + ":type=Synthetic,name=" + index);
+    }
+
+    public static void register(MBeanServer mbs, int count) throws JMException {
+        for (int i = 0; i < count; i++) {
+            mbs.registerMBean(new Synthetic(i), name(i));
+        }
+    }
+
+    public static void unregister(MBeanServer mbs) throws JMException {
+        for (ObjectName name : mbs.queryNames(new ObjectName(PATTERN), null)) {
+            mbs.unregisterMBean(name);
+        }
+    }
+}
@@ -21,15 +21,22 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.management.ObjectName;
 
 import org.teiid.CommandContext;
 import org.teiid.PreParser;
+import org.teiid.adminapi.Session;
+import org.teiid.adminapi.impl.SessionMetadata;
 import org.teiid.api.exception.query.QueryParserException;
 import org.teiid.core.TeiidRuntimeException;
+import org.teiid.core.util.LRUCache;
 import org.teiid.core.util.StringUtil;
-import org.teiid.jdbc.TeiidSQLException;
+import org.teiid.manageql.server.jmx.ManageQLMetrics;
 import org.teiid.query.parser.QueryParser;
 import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.symbol.GroupSymbol;
@@ -38,8 +45,29 @@ import org.teiid.query.sql.visitor.SQLStringVisitor;
 
 public class DynamicTableBuilder implements PreParser {
 
+    /**
+     * The pattern tables defined in a session, kept as a session attachment as the
+     * temporary tables are scoped to the session.
+     */
+    static class SessionTables {
+        final ConcurrentHashMap<String, SessionTable> tables = new ConcurrentHashMap<String, SessionTable>();
+    }
+
+    static class SessionTable {
+        final String ddl;
+        volatile long generation;
+
+        SessionTable(String ddl, long generation) {
+            this.ddl = ddl;
+            this.generation = generation;
+        }
+    }
+
+    public static final int PARSE_CACHE_SIZE = 1024;
+
     private ManageQLServer server;
     private static ThreadLocal<Boolean> PARSING = new ThreadLocal<>();
+    private final LRUCache<String, List<String>> parseCache = new LRUCache<String, List<String>>(PARSE_CACHE_SIZE);
 
     public DynamicTableBuilder(ManageQLServer server) {
         this.server = server;
@@ -47,6 +75,25 @@ public class DynamicTableBuilder implements PreParser {
 
     @Override
     public String preParse(String command, CommandContext context) {
+        ManageQLMetrics metrics = this.server.getMetrics();
+        if (metrics == null) {
+            return defineTables(command, context);
+        }
+        long start = System.nanoTime();
+        try {
+            return defineTables(command, context);
+        } finally {
+            metrics.getPreParseHistogram().recordSince(start);
+        }
+    }
+
+    private String defineTables(String command, CommandContext context) {
+        // a pattern table is referenced as "jmx.<domain>:<keys>", so without both there is nothing to
+        // define.  The domain separator alone is not enough as the casts of the pg catalog queries use ::
+        if (command.indexOf(':') < 0 || StringUtil.indexOfIgnoreCase(command, "jmx.") < 0) {
+            return command;
+        }
+
         Boolean val = PARSING.get();
         if (val != null && val) {
             //the preparser will be used even on the internal connection
@@ -56,23 +103,14 @@ public class DynamicTableBuilder implements PreParser {
 
         try {
             PARSING.set(true);
-            Command c = QueryParser.getQueryParser().parseCommand(command);
-            Connection conn = context.getConnection();
-            for (GroupSymbol g : GroupCollectorVisitor.getGroupsIgnoreInlineViews(c, true)) {
+            Connection conn = null;
+            for (String name : getGroupNames(command)) {
                 try {
-                    String name = g.getNonCorrelationName();
                     String nonQualifiedName = name.replace(".", "_");
-                    if (StringUtil.startsWithIgnoreCase(name, "sys.")
-                            || StringUtil.startsWithIgnoreCase(name, "sysadmin.")
-                            || StringUtil.startsWithIgnoreCase(name, "pg_catalog.")) {
+                    // an MBean table, or a pattern table defined up front with grouped tables
+                    if (this.server.tableExists(name)) {
                         continue;
                     }
-                    //make sure it's a pattern
-                    if (!name.contains("*") && !name.contains("?")) {
-                        if (this.server.tableExists(name)) {
-                            continue;
-                        }
-                    }
                     // if it is pattern, make sure it is valid pattern
                     try {
                         String objectName = name;
@@ -84,34 +122,113 @@ public class DynamicTableBuilder implements PreParser {
                         throw new TeiidRuntimeException("Invalid JMX pattern as table \"" + name +"\"");
                     }
 
-                    defineGroup(name, nonQualifiedName, conn);
+                    if (conn == null) {
+                        conn = context.getConnection();
+                    }
+                    defineGroup(name, nonQualifiedName, conn, getSessionTables(context));
                     command = command.replace(name, nonQualifiedName);
                 } catch (SQLException e) {
                     //ignore
                 }
             }
-        } catch (TeiidSQLException | QueryParserException e) {
-            //ignore
         } finally {
             PARSING.set(false);
         }
         return command;
     }
 
-    private void defineGroup(String objectName, String targetTableName, Connection conn) throws SQLException {
+    /**
+     * Get the names of the non-system groups referenced by the command.  The results are cached
+     * by command string as the same statements tend to be issued repeatedly.
+     */
+    private List<String> getGroupNames(String command) {
+        List<String> result;
+        synchronized (this.parseCache) {
+            result = this.parseCache.get(command);
+        }
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<String>(2);
+        try {
+            Command c = QueryParser.getQueryParser().parseCommand(command);
+            for (GroupSymbol g : GroupCollectorVisitor.getGroupsIgnoreInlineViews(c, true)) {
+                String name = g.getNonCorrelationName();
+                if (StringUtil.startsWithIgnoreCase(name, "sys.")
+                        || StringUtil.startsWithIgnoreCase(name, "sysadmin.")
+                        || StringUtil.startsWithIgnoreCase(name, "pg_catalog.")) {
+                    continue;
+                }
+                result.add(name);
+            }
+        } catch (QueryParserException e) {
+            //ignore, the engine will report the error
+        }
+        result = result.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(result);
+        synchronized (this.parseCache) {
+            this.parseCache.put(command, result);
+        }
+        return result;
+    }
+
+    private static SessionTables getSessionTables(CommandContext context) {
+        Session session = context.getSession();
+        if (!(session instanceof SessionMetadata)) {
+            return null;
+        }
+        SessionMetadata metadata = (SessionMetadata)session;
+        synchronized (metadata) {
+            SessionTables tables = metadata.getAttachment(SessionTables.class);
+            if (tables == null) {
+                tables = new SessionTables();
+                metadata.addAttchment(SessionTables.class, tables);
+            }
+            return tables;
+        }
+    }
+
+    /**
+     * Define the temporary table for the pattern.  An existing table is reused if no MBean has been
+     * registered or unregistered since it was defined, or if the ddl for the pattern is unchanged.
+     */
+    private void defineGroup(String objectName, String targetTableName, Connection conn, SessionTables tables)
+            throws SQLException {
+        // read the generation first so that a concurrent registration will trigger a later rebuild
+        long generation = this.server.getRegistrationGeneration();
+        SessionTable existing = tables == null ? null : tables.tables.get(targetTableName);
+        if (existing != null && generation != -1 && existing.generation == generation) {
+            return;
+        }
+
         Statement s = conn.createStatement();
+        String sql = null;
+        ResultSet rs = s.executeQuery("call jmx.get_dynamic_table_ddl('" + objectName + "','"+targetTableName+"')");
+        if (rs.next()) {
+            sql = rs.getString(1);
+        }
+        rs.close();
+
+        if (existing != null && existing.ddl.equals(sql)) {
+            existing.generation = generation;
+            return;
+        }
+
         try {
             s.execute("drop table " + SQLStringVisitor.escapeSinglePart(targetTableName));
         } catch (SQLException e) {
         }
 
         //run the create
-        ResultSet rs = s.executeQuery("call jmx.get_dynamic_table_ddl('" + objectName + "','"+targetTableName+"')");
-        if (rs.next()) {
-            String sql = rs.getString(1);
+        if (sql != null) {
             s.execute(sql);
+            ManageQLMetrics metrics = this.server.getMetrics();
+            if (metrics != null) {
+                metrics.recordDdlRebuild();
+            }
+            if (tables != null) {
+                tables.tables.put(targetTableName, new SessionTable(sql, generation));
+            }
         }
-        rs.close();
     }
 
-}
\ No newline at end of file
+}
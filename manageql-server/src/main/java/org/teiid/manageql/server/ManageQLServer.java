@@ -17,12 +17,18 @@
  */
 package org.teiid.manageql.server;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.LogManager;
 
 import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
 
 import org.teiid.adminapi.Model.Type;
 import org.teiid.adminapi.impl.ModelMetaData;
@@ -31,8 +37,16 @@ import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.deployers.VirtualDatabaseException;
 import org.teiid.dqp.internal.datamgr.ConnectorManagerRepository.ConnectorManagerException;
+import org.teiid.manageql.server.jmx.HistorySampler;
 import org.teiid.manageql.server.jmx.JmxConnectionFactory;
+import org.teiid.manageql.server.jmx.JmxNode;
 import org.teiid.manageql.server.jmx.JmxTranslator;
+import org.teiid.manageql.server.jmx.ManageQLMetrics;
+import org.teiid.manageql.server.jmx.NotificationCollector;
+import org.teiid.manageql.server.jmx.QueryGovernor;
+import org.teiid.manageql.server.jmx.SchemaUpdater;
+import org.teiid.metadata.MetadataStore;
+import org.teiid.metadata.Schema;
 import org.teiid.query.metadata.TransformationMetadata;
 import org.teiid.runtime.EmbeddedConfiguration;
 import org.teiid.runtime.EmbeddedServer;
@@ -42,7 +56,33 @@ import org.teiid.transport.WireProtocol;
 
 public class ManageQLServer extends EmbeddedServer {
 
-    private MBeanServerConnection serverConnection;
+    public static final int DEFAULT_GATEWAY_FETCH_THREADS = 8;
+    public static final int DEFAULT_MAX_THREADS = 8;
+    public static final int DEFAULT_MAX_ACTIVE_PLANS = 8;
+    public static final int DEFAULT_MAX_ASYNC_THREADS = 2;
+
+    private Map<String, MBeanServerConnection> serverConnections = new LinkedHashMap<String, MBeanServerConnection>();
+    private Integer fetchThreads;
+    private int fetchWindow = JmxConnectionFactory.DEFAULT_FETCH_WINDOW;
+    private long nodeTimeout = JmxConnectionFactory.DEFAULT_NODE_TIMEOUT;
+    private long coalesceWindow;
+    private long attributeTimeout;
+    private int threadMaxDepth;
+    private boolean virtualThreads;
+    private int maxCallsPerSecond;
+    private int maxBeansPerQuery;
+    private long maxBytesPerQuery;
+    private long queryTimeout;
+    private long allocationBudget;
+    private JmxConnectionFactory connectionFactory;
+    private String history;
+    private long historyInterval = HistorySampler.DEFAULT_INTERVAL;
+    private int historyCapacity = HistorySampler.DEFAULT_CAPACITY;
+    private String notifications;
+    private int notificationCapacity = NotificationCollector.DEFAULT_CAPACITY;
+    private JmxTranslator translator = new JmxTranslator();
+    private long schemaUpdateWindow = SchemaUpdater.DEFAULT_WINDOW;
+    private SchemaUpdater schemaUpdater;
     EmbeddedConfiguration ec = new EmbeddedConfiguration();
     SocketConfiguration sc = new SocketConfiguration();
 
@@ -57,9 +97,9 @@ public class ManageQLServer extends EmbeddedServer {
 
     public ManageQLServer() {
         // configuration for Teiid
-        ec.setMaxActivePlans(2);
-        ec.setMaxAsyncThreads(1);
-        ec.setMaxThreads(2);
+        ec.setMaxActivePlans(DEFAULT_MAX_ACTIVE_PLANS);
+        ec.setMaxAsyncThreads(DEFAULT_MAX_ASYNC_THREADS);
+        ec.setMaxThreads(DEFAULT_MAX_THREADS);
         ec.setUseDisk(true);
         ec.setMaxReserveKb(0);
 
@@ -87,6 +127,12 @@ public class ManageQLServer extends EmbeddedServer {
         } catch (VirtualDatabaseException | ConnectorManagerException | TranslatorException e) {
             throw new IllegalStateException("failed to start managemeql server", e);
         }
+        if (!translator.isLazyMetadata()) {
+            // lazily defined tables are already built as they are referenced
+            schemaUpdater = new SchemaUpdater(translator, connectionFactory, this::getJmxSchema,
+                    this::publishJmxSchema, schemaUpdateWindow);
+            schemaUpdater.start();
+        }
     }
 
     private ModelMetaData createJMXModel() {
@@ -100,22 +146,282 @@ public class ManageQLServer extends EmbeddedServer {
         source.setTranslatorName("jmx");
         model.addSourceMapping(source);
 
-        this.addTranslator("jmx", new JmxTranslator());
-        MBeanServerConnection jmxConnection = getMBeanServerConnection();
-        if( jmxConnection == null ) {
-            jmxConnection = ManagementFactory.getPlatformMBeanServer();
+        this.addTranslator("jmx", translator);
+        List<JmxNode> nodes = new ArrayList<JmxNode>();
+        int threads = 0;
+        if (serverConnections.isEmpty()) {
+            nodes.add(new JmxNode(JmxNode.LOCAL, ManagementFactory.getPlatformMBeanServer()));
+        } else {
+            for (Map.Entry<String, MBeanServerConnection> entry : serverConnections.entrySet()) {
+                nodes.add(new JmxNode(entry.getKey(), entry.getValue()));
+            }
+            // remote calls are worth overlapping
+            threads = DEFAULT_GATEWAY_FETCH_THREADS;
         }
-        this.addConnectionFactory("jmx", new JmxConnectionFactory(jmxConnection));
+        if (fetchThreads != null) {
+            threads = fetchThreads;
+        }
+        connectionFactory = new JmxConnectionFactory(nodes);
+        connectionFactory.setFetchThreads(threads);
+        connectionFactory.setFetchWindow(fetchWindow);
+        connectionFactory.setNodeTimeout(nodeTimeout);
+        connectionFactory.setCoalesceWindow(coalesceWindow);
+        connectionFactory.setAttributeTimeout(attributeTimeout);
+        connectionFactory.setThreadMaxDepth(threadMaxDepth);
+        connectionFactory.setVirtualThreads(virtualThreads);
+        QueryGovernor governor = connectionFactory.getGovernor();
+        governor.setMaxCallsPerSecond(maxCallsPerSecond);
+        governor.setMaxBeans(maxBeansPerQuery);
+        governor.setMaxBytes(maxBytesPerQuery);
+        governor.setQueryTimeout(queryTimeout);
+        governor.setAllocationBudget(allocationBudget);
+        if (history != null) {
+            try {
+                HistorySampler sampler = new HistorySampler(nodes, HistorySampler.parse(history),
+                        historyInterval, historyCapacity);
+                connectionFactory.setHistorySampler(sampler);
+                sampler.start();
+            } catch (MalformedObjectNameException e) {
+                throw new IllegalArgumentException("Invalid history configuration " + history, e);
+            }
+        }
+        if (notifications != null) {
+            try {
+                NotificationCollector collector = new NotificationCollector(nodes,
+                        NotificationCollector.parse(notifications), notificationCapacity);
+                connectionFactory.setNotificationCollector(collector);
+                collector.start();
+            } catch (MalformedObjectNameException e) {
+                throw new IllegalArgumentException("Invalid notifications configuration " + notifications, e);
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not subscribe to notifications", e);
+            }
+        }
+        this.addConnectionFactory("jmx", connectionFactory);
+        // registered before the metadata is loaded so that it has a table like any other bean
+        connectionFactory.getMetrics().register();
 
         return model;
     }
 
+    @Override
+    public synchronized void stop() {
+        if (schemaUpdater != null) {
+            schemaUpdater.close();
+            schemaUpdater = null;
+        }
+        super.stop();
+        if (connectionFactory != null) {
+            connectionFactory.getMetrics().unregister();
+            connectionFactory.close();
+            connectionFactory = null;
+        }
+    }
+
+    /**
+     * Sets the single MBeanServer to query, without one the platform MBeanServer is used
+     */
     public void setMBeanServerConnection(MBeanServerConnection mBeanServer) {
-        this.serverConnection = mBeanServer;
+        this.serverConnections.clear();
+        addMBeanServerConnection(JmxNode.LOCAL, mBeanServer);
+    }
+
+    /**
+     * Adds an MBeanServer to query.  With more than one, each query is executed against all of them
+     * concurrently and the tables have a "$Node" column holding the node name.
+     */
+    public void addMBeanServerConnection(String node, MBeanServerConnection mBeanServer) {
+        this.serverConnections.put(node, mBeanServer);
     }
 
     public MBeanServerConnection getMBeanServerConnection() {
-        return serverConnection;
+        if (serverConnections.isEmpty()) {
+            return null;
+        }
+        return serverConnections.values().iterator().next();
+    }
+
+    /**
+     * Sets the milliseconds to wait for each node when querying many, the rows of slower nodes are
+     * omitted with a warning.
+     */
+    public void setNodeTimeout(long nodeTimeout) {
+        this.nodeTimeout = nodeTimeout;
+    }
+
+    /**
+     * Sets the milliseconds that the result of a remote JMX call may be shared with other queries
+     * for the same beans and attributes.  The default, 0, only shares the calls that are in flight.
+     */
+    public void setCoalesceWindow(long coalesceWindow) {
+        this.coalesceWindow = coalesceWindow;
+    }
+
+    /**
+     * Sets the milliseconds to wait for the attributes of an MBean.  The attributes whose getters take
+     * longer are null in the row with a warning, and are later read on their own so as not to delay
+     * the others.  0, the default, waits for every attribute.
+     */
+    public void setAttributeTimeout(long attributeTimeout) {
+        this.attributeTimeout = attributeTimeout;
+    }
+
+    /**
+     * Sets the most stack frames read of each thread for the jmx_thread_frames table.  0, the default,
+     * reads the whole stack.
+     */
+    public void setThreadMaxDepth(int threadMaxDepth) {
+        this.threadMaxDepth = threadMaxDepth;
+    }
+
+    /**
+     * When true, and running on Java 21 or later, the remote JMX calls are made on virtual threads
+     * rather than the fetch and node thread pools, so that many slow calls cost little more than
+     * their sockets.
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Sets the JMX calls per second allowed across all queries, further calls are delayed.
+     * 0, the default, is no limit.
+     */
+    public void setMaxCallsPerSecond(int maxCallsPerSecond) {
+        this.maxCallsPerSecond = maxCallsPerSecond;
+    }
+
+    /**
+     * Sets the number of MBeans a query may read, a query that would read more fails.
+     * 0, the default, is no limit.
+     */
+    public void setMaxBeansPerQuery(int maxBeansPerQuery) {
+        this.maxBeansPerQuery = maxBeansPerQuery;
+    }
+
+    /**
+     * Sets the estimated bytes of attribute values a query may read, a query that reads more fails.
+     * 0, the default, is no limit.
+     */
+    public void setMaxBytesPerQuery(long maxBytesPerQuery) {
+        this.maxBytesPerQuery = maxBytesPerQuery;
+    }
+
+    /**
+     * Sets the milliseconds a query may take reading MBeans before it is stopped.  0, the default,
+     * is no limit.
+     */
+    public void setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Sets the bytes a query may allocate on the query thread while reading MBeans, a query that
+     * allocates more fails.  This relies on the JVM measuring thread allocation.  0, the default,
+     * is no limit.
+     */
+    public void setAllocationBudget(long allocationBudget) {
+        this.allocationBudget = allocationBudget;
+    }
+
+    /**
+     * Sets the number of threads used to fetch attributes concurrently, 0 fetches on the engine thread.
+     * Defaults to 0 in agent mode and {@link #DEFAULT_GATEWAY_FETCH_THREADS} in gateway mode.
+     */
+    public void setFetchThreads(int fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+
+    /**
+     * Sets the number of beans to read ahead when fetching concurrently.
+     */
+    public void setFetchWindow(int fetchWindow) {
+        this.fetchWindow = fetchWindow;
+    }
+
+    /**
+     * When lazy, tables are only defined for the MBeans and patterns as they are referenced rather
+     * than for every MBean at startup.  Such tables are not visible to catalog queries.
+     */
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.translator.setLazyMetadata(lazyMetadata);
+    }
+
+    /**
+     * When grouped, a table is defined at startup for each MBean domain and type, named by the
+     * pattern matching them such as <code>java.lang:type=MemoryPool,*</code>, rather than a table
+     * for each MBean.
+     */
+    public void setGroupedTables(boolean groupedTables) {
+        this.translator.setGroupedTables(groupedTables);
+    }
+
+    /**
+     * Sets the milliseconds that MBean registrations are collected for before the tables are added to
+     * or removed from the schema, so that a burst of registrations costs one update.
+     */
+    public void setSchemaUpdateWindow(long schemaUpdateWindow) {
+        this.schemaUpdateWindow = schemaUpdateWindow;
+    }
+
+    /**
+     * Sets the attributes to sample into the jmx_history table, in the form
+     * <code>pattern@attribute|attribute;pattern@attribute</code>.  A CompositeData item may be
+     * addressed with a dot, such as <code>java.lang:type=Memory@HeapMemoryUsage.used</code>.
+     */
+    public void setHistory(String history) {
+        this.history = history;
+    }
+
+    /**
+     * Sets the milliseconds between history samples
+     */
+    public void setHistoryInterval(long historyInterval) {
+        this.historyInterval = historyInterval;
+    }
+
+    /**
+     * Sets the number of samples retained, each sample takes about 20 bytes
+     */
+    public void setHistoryCapacity(int historyCapacity) {
+        this.historyCapacity = historyCapacity;
+    }
+
+    /**
+     * Sets the ObjectName patterns, separated by <code>;</code>, of the MBeans whose notifications
+     * are recorded in the jmx_notifications table.
+     */
+    public void setNotifications(String notifications) {
+        this.notifications = notifications;
+    }
+
+    /**
+     * Sets the number of notifications retained
+     */
+    public void setNotificationCapacity(int notificationCapacity) {
+        this.notificationCapacity = notificationCapacity;
+    }
+
+    /**
+     * Sets the maximum number of engine threads.  Executions against remote nodes do not hold a
+     * thread while waiting, so a few threads serve many concurrent queries.
+     */
+    public void setMaxThreads(int maxThreads) {
+        this.ec.setMaxThreads(maxThreads);
+    }
+
+    /**
+     * Sets the maximum number of queries that are processed concurrently, further queries are queued
+     */
+    public void setMaxActivePlans(int maxActivePlans) {
+        this.ec.setMaxActivePlans(maxActivePlans);
+    }
+
+    /**
+     * Sets the maximum number of threads for the engine's asynchronous work
+     */
+    public void setMaxAsyncThreads(int maxAsyncThreads) {
+        this.ec.setMaxAsyncThreads(maxAsyncThreads);
     }
 
     public void setPsqlPortNumber(int port) {
@@ -126,6 +432,68 @@ public class ManageQLServer extends EmbeddedServer {
         return this.sc.getPortNumber();
     }
 
+    /**
+     * @return a value that changes whenever an MBean is registered or unregistered, or -1 if
+     * registrations are not being tracked
+     */
+    long getRegistrationGeneration() {
+        JmxConnectionFactory factory = this.connectionFactory;
+        if (factory == null) {
+            return -1;
+        }
+        return factory.getRegistrationGeneration();
+    }
+
+    /**
+     * @return the metrics of the running server, or null if it is not running
+     */
+    public ManageQLMetrics getMetrics() {
+        JmxConnectionFactory factory = this.connectionFactory;
+        if (factory == null) {
+            return null;
+        }
+        return factory.getMetrics();
+    }
+
+    /**
+     * @return the updater of the schema, or null if the server is not running or defines the tables lazily
+     */
+    SchemaUpdater getSchemaUpdater() {
+        return schemaUpdater;
+    }
+
+    private Schema getJmxSchema() {
+        VDBMetaData vdb = getVDBRepository().getVDB("manageql", "1");
+        TransformationMetadata metadata = vdb == null ? null : vdb.getAttachment(TransformationMetadata.class);
+        if (metadata == null) {
+            return null;
+        }
+        return metadata.getMetadataStore().getSchema("jmx");
+    }
+
+    /**
+     * Replace the deployed jmx schema with an updated copy.  Replacing the value of an existing key,
+     * or an element of the list, is not a structural modification, so the queries iterating over the
+     * schemas, such as those of the system tables, are not disturbed.
+     */
+    private void publishJmxSchema(Schema schema) {
+        VDBMetaData vdb = getVDBRepository().getVDB("manageql", "1");
+        TransformationMetadata metadata = vdb == null ? null : vdb.getAttachment(TransformationMetadata.class);
+        if (metadata == null) {
+            return;
+        }
+        MetadataStore store = metadata.getMetadataStore();
+        synchronized (store) {
+            List<Schema> schemas = store.getSchemaList();
+            int index = schemas.indexOf(schema);
+            if (index < 0) {
+                return;
+            }
+            schemas.set(index, schema);
+            store.getSchemas().put(schema.getName(), schema);
+        }
+    }
+
     boolean tableExists(String name) {
         VDBMetaData vdb = getVDBRepository().getVDB("manageql", "1");
         TransformationMetadata metadata = vdb.getAttachment(TransformationMetadata.class);
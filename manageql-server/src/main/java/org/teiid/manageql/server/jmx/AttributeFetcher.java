@@ -0,0 +1,463 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Fetches the attributes for a sequence of ObjectNames.
+ * <p>
+ * When an executor is supplied, up to window fetches are issued ahead of the consumer and run
+ * concurrently, the results are still handed out in the order of the names.  Without an executor the
+ * attributes are fetched on the calling thread, which is the cheapest path for an in process MBeanServer.
+ * <p>
+ * With an executor the consumer may use {@link #isReady()} to avoid waiting, the fetched listener is
+ * run as each fetch completes.
+ * <p>
+ * With an attribute timeout, see {@link #setAttributeTimeout}, the attributes that miss it are omitted
+ * from the bean rather than holding up the query.
+ * <p>
+ * With a governor, see {@link #setGovernor}, each call to the MBeanServer takes a token first.
+ */
+public class AttributeFetcher {
+
+    public static class FetchedBean {
+        private final ObjectName name;
+        private final AttributeList attributes;
+
+        FetchedBean(ObjectName name, AttributeList attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+
+        public ObjectName getName() {
+            return name;
+        }
+
+        public AttributeList getAttributes() {
+            return attributes;
+        }
+    }
+
+    private static class PendingFetch {
+        final ObjectName name;
+        final Future<AttributeList> attributes;
+
+        PendingFetch(ObjectName name, Future<AttributeList> attributes) {
+            this.name = name;
+            this.attributes = attributes;
+        }
+    }
+
+    /**
+     * An attribute read on its own under the attribute timeout
+     */
+    private static class SingleRead {
+        final int index;
+        final long start = System.nanoTime();
+        final long deadline;
+        final Future<Object> value;
+
+        SingleRead(int index, long deadline, Future<Object> value) {
+            this.index = index;
+            this.deadline = deadline;
+            this.value = value;
+        }
+    }
+
+    private final MBeanServerConnection mbsc;
+    private final Iterator<ObjectName> names;
+    private final String[] attributeNames;
+    private final ExecutorService executor;
+    private final int window;
+    private final Runnable fetchedListener;
+    private final ArrayDeque<PendingFetch> pending = new ArrayDeque<PendingFetch>();
+    private FetchCoalescer coalescer;
+    private LatencyHistogram latency;
+    private long attributeTimeout;
+    private ExecutorService attributeExecutor;
+    private SlowAttributes slowAttributes;
+    private String[] slowKeys;
+    private boolean skipSlow;
+    private String table;
+    private Consumer<String> warningListener;
+    private QueryGovernor governor;
+    private boolean blocking;
+
+    public AttributeFetcher(MBeanServerConnection mbsc, Iterator<ObjectName> names, String[] attributeNames,
+            ExecutorService executor, int window) {
+        this(mbsc, names, attributeNames, executor, window, null);
+    }
+
+    /**
+     * @param fetchedListener run as each concurrent fetch completes, may be null
+     */
+    public AttributeFetcher(MBeanServerConnection mbsc, Iterator<ObjectName> names, String[] attributeNames,
+            ExecutorService executor, int window, Runnable fetchedListener) {
+        this.mbsc = mbsc;
+        this.names = names;
+        this.attributeNames = attributeNames;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+        this.fetchedListener = fetchedListener;
+    }
+
+    /**
+     * Sets the coalescer to share the fetches with concurrent executions, may be null
+     */
+    public void setCoalescer(FetchCoalescer coalescer) {
+        this.coalescer = coalescer;
+    }
+
+    /**
+     * Sets the histogram to record the latency of each fetch with, may be null
+     */
+    public void setLatencyHistogram(LatencyHistogram latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Sets the governor charged for each call, may be null.  The fetches made ahead on the executor wait
+     * for a token, as do those made by {@link #next()} when blocking.  Otherwise {@link #next()} throws a
+     * {@link DataNotAvailableException} rather than wait for the token of a bean, so that an engine thread
+     * is not held.  Reading attributes on their own under the attribute timeout takes a token for each,
+     * those are waited for.
+     */
+    public void setGovernor(QueryGovernor governor, boolean blocking) {
+        this.governor = governor;
+        this.blocking = blocking;
+    }
+
+    /**
+     * Reads the attributes on the attribute executor, waiting at most timeout milliseconds for those of
+     * each bean.  An attribute that misses the timeout is omitted and reported to the warning listener.
+     * When several attributes are read together they are given half of the timeout, so that if they miss it
+     * each can be read again on its own within the rest of it to find the slow ones.  Those are from then
+     * on read on their own concurrently with the others.
+     * @param node and table identify the attributes to slowAttributes
+     * @param skipSlow true to omit the attributes known to be slow rather than read them
+     * @param warningListener called from the fetching threads
+     */
+    public void setAttributeTimeout(long timeout, ExecutorService attributeExecutor, SlowAttributes slowAttributes,
+            String node, String table, boolean skipSlow, Consumer<String> warningListener) {
+        this.attributeTimeout = timeout;
+        this.attributeExecutor = attributeExecutor;
+        this.slowAttributes = slowAttributes;
+        this.skipSlow = skipSlow;
+        this.table = table;
+        this.warningListener = warningListener;
+        this.slowKeys = new String[this.attributeNames.length];
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            this.slowKeys[i] = SlowAttributes.getKey(node, table, this.attributeNames[i]);
+        }
+    }
+
+    /**
+     * @return true if {@link #next()} will return without waiting on a fetch
+     */
+    public boolean isReady() {
+        if (this.executor == null) {
+            return true;
+        }
+        fill();
+        PendingFetch fetch = this.pending.peek();
+        return fetch == null || fetch.attributes.isDone();
+    }
+
+    /**
+     * @return the next bean or null if there are no more names
+     * @throws DataNotAvailableException if not blocking and the governor has no token for the call
+     */
+    public FetchedBean next() throws TranslatorException {
+        if (this.executor == null) {
+            if (!this.names.hasNext()) {
+                return null;
+            }
+            boolean charged = false;
+            if (this.governor != null && !this.blocking) {
+                long wait = this.governor.tryAcquire();
+                if (wait > 0) {
+                    // over the calls per second limit
+                    throw new DataNotAvailableException(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                }
+                charged = true;
+            }
+            ObjectName name = this.names.next();
+            try {
+                return new FetchedBean(name, getAttributes(name, charged));
+            } catch (IOException | InstanceNotFoundException | ReflectionException e) {
+                throw new TranslatorException(e);
+            }
+        }
+
+        fill();
+        PendingFetch fetch = this.pending.poll();
+        if (fetch == null) {
+            return null;
+        }
+        fill();
+        try {
+            return new FetchedBean(fetch.name, fetch.attributes.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TranslatorException(e);
+        } catch (ExecutionException e) {
+            throw new TranslatorException(e.getCause());
+        }
+    }
+
+    private void fill() {
+        while (this.pending.size() < this.window && this.names.hasNext()) {
+            final ObjectName name = this.names.next();
+            FutureTask<AttributeList> future = new FutureTask<AttributeList>(new Callable<AttributeList>() {
+                @Override
+                public AttributeList call() throws Exception {
+                    return getAttributes(name, false);
+                }
+            }) {
+                @Override
+                protected void done() {
+                    if (fetchedListener != null) {
+                        fetchedListener.run();
+                    }
+                }
+            };
+            this.executor.execute(future);
+            this.pending.add(new PendingFetch(name, future));
+        }
+    }
+
+    /**
+     * @param charged true if the token for the first call has already been taken
+     */
+    private AttributeList getAttributes(ObjectName name, boolean charged)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        if (this.latency == null) {
+            return fetch(name, charged);
+        }
+        long start = System.nanoTime();
+        try {
+            return fetch(name, charged);
+        } finally {
+            this.latency.recordSince(start);
+        }
+    }
+
+    private AttributeList fetch(ObjectName name, boolean charged)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        if (this.attributeTimeout > 0) {
+            return fetchWithTimeout(name, charged);
+        }
+        if (!charged) {
+            charge();
+        }
+        return fetch(name, this.attributeNames);
+    }
+
+    /**
+     * Take a token for a call, waiting for it
+     */
+    private void charge() throws InterruptedIOException {
+        if (this.governor != null) {
+            this.governor.acquire();
+        }
+    }
+
+    private AttributeList fetch(ObjectName name, String[] attributes)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        if (this.coalescer != null) {
+            return this.coalescer.getAttributes(this.mbsc, name, attributes);
+        }
+        return this.mbsc.getAttributes(name, attributes);
+    }
+
+    private AttributeList fetchWithTimeout(ObjectName name, boolean charged)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        long timeout = TimeUnit.MILLISECONDS.toNanos(this.attributeTimeout);
+        long start = System.nanoTime();
+        long deadline = start + timeout;
+
+        List<Integer> grouped = new ArrayList<Integer>(this.attributeNames.length);
+        List<SingleRead> singles = new ArrayList<SingleRead>();
+        // the token taken by the caller pays for the first call
+        boolean prepaid = charged;
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            if (!this.slowAttributes.isSlow(this.slowKeys[i])) {
+                grouped.add(i);
+            } else if (this.skipSlow) {
+                warn("Attribute " + this.attributeNames[i] + " of " + this.table
+                        + " was not read as it is slow, select it by name to read it");
+            } else {
+                singles.add(readAlone(name, i, deadline, prepaid));
+                prepaid = false;
+            }
+        }
+
+        AttributeList result = new AttributeList(this.attributeNames.length);
+        if (!grouped.isEmpty()) {
+            final String[] groupNames = new String[grouped.size()];
+            for (int j = 0; j < groupNames.length; j++) {
+                groupNames[j] = this.attributeNames[grouped.get(j)];
+            }
+            if (!prepaid) {
+                charge();
+            }
+            Future<AttributeList> group = submit(() -> fetch(name, groupNames));
+            // leaves the rest of the timeout to read the attributes of a group that misses it on their own
+            long groupDeadline = grouped.size() > 1 ? start + timeout / 2 : deadline;
+            try {
+                result.addAll(await(group, groupDeadline));
+            } catch (TimeoutException e) {
+                if (group == null || grouped.size() == 1) {
+                    for (int i : grouped) {
+                        timedOut(i, group);
+                    }
+                } else {
+                    // find the slow ones by reading each on its own, so that the others are still returned
+                    for (int i : grouped) {
+                        singles.add(readAlone(name, i, deadline, false));
+                    }
+                }
+            } catch (ExecutionException e) {
+                throw rethrow(e.getCause());
+            }
+        }
+        for (SingleRead single : singles) {
+            try {
+                Object value = await(single.value, single.deadline);
+                this.slowAttributes.read(this.slowKeys[single.index], System.nanoTime() - single.start, timeout);
+                result.add(new Attribute(this.attributeNames[single.index], value));
+            } catch (TimeoutException e) {
+                timedOut(single.index, single.value);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof InstanceNotFoundException || cause instanceof IOException) {
+                    throw rethrow(cause);
+                }
+                // like getAttributes, an attribute that can't be read is omitted
+            }
+        }
+        return result;
+    }
+
+    private SingleRead readAlone(final ObjectName name, int i, long deadline, boolean charged)
+            throws InterruptedIOException {
+        if (!charged) {
+            charge();
+        }
+        final String attribute = this.attributeNames[i];
+        return new SingleRead(i, deadline, submit(() -> this.mbsc.getAttribute(name, attribute)));
+    }
+
+    private <T> Future<T> submit(Callable<T> task) {
+        try {
+            return this.attributeExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // too many getters are still running, treated as a timeout
+            return null;
+        }
+    }
+
+    private static <T> T await(Future<T> future, long deadline)
+            throws ExecutionException, TimeoutException, InterruptedIOException {
+        if (future == null) {
+            throw new TimeoutException();
+        }
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw e;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void timedOut(int i, Future<?> read) {
+        if (read == null) {
+            warn("Attribute " + this.attributeNames[i] + " of " + this.table
+                    + " was not read as too many slow getters are still running");
+            return;
+        }
+        this.slowAttributes.timedOut(this.slowKeys[i]);
+        warn("Attribute " + this.attributeNames[i] + " of " + this.table + " did not respond within "
+                + this.attributeTimeout + " ms and is null");
+    }
+
+    private void warn(String message) {
+        if (this.warningListener != null) {
+            this.warningListener.accept(message);
+        }
+    }
+
+    private static IOException rethrow(Throwable cause)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        if (cause instanceof InstanceNotFoundException) {
+            throw (InstanceNotFoundException)cause;
+        }
+        if (cause instanceof ReflectionException) {
+            throw (ReflectionException)cause;
+        }
+        if (cause instanceof IOException) {
+            throw (IOException)cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException)cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error)cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Cancel any outstanding fetches
+     */
+    public void close() {
+        for (PendingFetch fetch : this.pending) {
+            fetch.attributes.cancel(true);
+        }
+        this.pending.clear();
+    }
+}
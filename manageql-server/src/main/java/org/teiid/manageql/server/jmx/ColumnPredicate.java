@@ -0,0 +1,157 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * A single pushed down predicate against one column, e.g. <code>"$ObjectName" LIKE '%topic=orders%'</code>.
+ * Predicates are evaluated against the value the column would have in the row, with SQL semantics
+ * for nulls (a null value never matches).
+ */
+public class ColumnPredicate implements Serializable {
+
+    private static final long serialVersionUID = -3473619722394426126L;
+
+    public enum Operator {
+        EQ, NE, LT, LE, GT, GE, IN, LIKE
+    }
+
+    private final String column;
+    private final String keyProperty;
+    private final Operator operator;
+    private final List<Object> values;
+    private final boolean negated;
+    private final Pattern pattern;
+
+    /**
+     * @param column the column name
+     * @param keyProperty the ObjectName key property backing the column, or null
+     * @param operator the comparison
+     * @param values the literal values, a single value except for IN
+     * @param negated true for NOT IN and NOT LIKE
+     * @param escape the LIKE escape character, or null
+     */
+    public ColumnPredicate(String column, String keyProperty, Operator operator, List<Object> values,
+            boolean negated, Character escape) {
+        this.column = column;
+        this.keyProperty = keyProperty;
+        this.operator = operator;
+        this.values = Collections.unmodifiableList(values);
+        this.negated = negated;
+        if (operator == Operator.LIKE) {
+            this.pattern = Pattern.compile(toRegex(String.valueOf(values.get(0)), escape), Pattern.DOTALL);
+        } else {
+            this.pattern = null;
+        }
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getKeyProperty() {
+        return keyProperty;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public boolean isNegated() {
+        return negated;
+    }
+
+    /**
+     * @return true if the predicate restricts the column to a known set of values
+     */
+    public boolean isEquality() {
+        return !negated && (operator == Operator.EQ || operator == Operator.IN);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public boolean matches(Object value) {
+        if (value == null) {
+            return false;
+        }
+        boolean result;
+        switch (operator) {
+        case EQ:
+            return value.equals(values.get(0));
+        case NE:
+            return !value.equals(values.get(0));
+        case IN:
+            result = values.contains(value);
+            break;
+        case LIKE:
+            result = pattern.matcher(value.toString()).matches();
+            break;
+        default:
+            int compare = ((Comparable)value).compareTo(values.get(0));
+            switch (operator) {
+            case LT:
+                return compare < 0;
+            case LE:
+                return compare <= 0;
+            case GT:
+                return compare > 0;
+            default:
+                return compare >= 0;
+            }
+        }
+        return result != negated;
+    }
+
+    /**
+     * Converts a SQL LIKE pattern into the equivalent java regular expression
+     */
+    static String toRegex(String like, Character escape) {
+        StringBuilder regex = new StringBuilder(like.length() + 8);
+        boolean escaped = false;
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (!escaped && escape != null && c == escape) {
+                escaped = true;
+                continue;
+            }
+            if (!escaped && c == '%') {
+                regex.append(".*");
+            } else if (!escaped && c == '_') {
+                regex.append('.');
+            } else if (Character.isLetterOrDigit(c)) {
+                regex.append(c);
+            } else {
+                regex.append('\\').append(c);
+            }
+            escaped = false;
+        }
+        return regex.toString();
+    }
+
+    @Override
+    public String toString() {
+        return column + (negated ? " NOT " : " ") + operator + " " + values;
+    }
+}
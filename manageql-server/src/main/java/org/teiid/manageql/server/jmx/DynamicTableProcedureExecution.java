@@ -18,17 +18,19 @@
 package org.teiid.manageql.server.jmx;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
-import javax.management.MBeanServerConnection;
 import javax.management.MalformedObjectNameException;
-import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
 
@@ -53,6 +55,16 @@ public class DynamicTableProcedureExecution implements ProcedureExecution {
     private StringBuilder resultDDL = new StringBuilder();
     private boolean served = false;
 
+    // the scan of the beans, resumed when waiting for the calls per second limit
+    private String objectName;
+    private ObjectName pattern;
+    private int nodeIndex;
+    private List<ObjectName> beanNames;
+    private int beanIndex;
+    // sorted so that the same set of attributes always produces the same ddl
+    private final TreeMap<String, String> attributes = new TreeMap<String, String>();
+    private final TreeSet<String> keys = new TreeSet<String>();
+
     public DynamicTableProcedureExecution(Call command, ExecutionContext executionContext, RuntimeMetadata metadata,
             JmxConnection connection) {
         this.command = command;
@@ -63,7 +75,6 @@ public class DynamicTableProcedureExecution implements ProcedureExecution {
 
     @Override
     public void execute() throws TranslatorException {
-        MBeanServerConnection mbsc = conn.mbsc;
         List<Argument> arguments = this.command.getArguments();
 
         try {
@@ -73,32 +84,91 @@ public class DynamicTableProcedureExecution implements ProcedureExecution {
                 objectName = objectName.substring(4);
             }
             this.resultDDL.append("CREATE FOREIGN TEMPORARY TABLE ").append(SQLStringVisitor.escapeSinglePart(tableName));
-            ObjectName name = new ObjectName(objectName);
+            this.pattern = new ObjectName(objectName);
+            this.objectName = objectName;
             this.resultDDL.append(" (").append(SQLStringVisitor.escapeSinglePart(JmxTranslator.OBJECT_NAME_COLUMN)).append(" string");
-            HashSet<String> attributes = new HashSet<String>();
-            for (ObjectInstance oi : mbsc.queryMBeans(name, null)) {
-                MBeanInfo info = mbsc.getMBeanInfo(oi.getObjectName());
+        } catch (MalformedObjectNameException e) {
+            throw new TranslatorException(e);
+        }
+    }
+
+    /**
+     * Read the key properties and attributes of the matching beans, each call takes a token from the
+     * governor.  This is done on the engine thread, so rather than wait for a token a
+     * {@link DataNotAvailableException} is thrown and the scan resumes on the next call.
+     */
+    private void scan() throws TranslatorException {
+        QueryGovernor governor = conn.factory.getGovernor();
+        List<JmxNode> nodes = conn.getNodes();
+        try {
+            while (this.nodeIndex < nodes.size()) {
+                JmxNode node = nodes.get(this.nodeIndex);
+                if (this.beanNames == null) {
+                    throttle(governor.tryAcquire());
+                    this.beanNames = new ArrayList<ObjectName>(node.getConnection().queryNames(this.pattern, null));
+                    this.beanIndex = 0;
+                }
+                if (this.beanIndex == this.beanNames.size()) {
+                    this.beanNames = null;
+                    this.nodeIndex++;
+                    continue;
+                }
+                ObjectName beanName = this.beanNames.get(this.beanIndex);
+                MBeanInfo info = node.getCachedMBeanInfo(beanName);
+                if (info == null) {
+                    throttle(governor.tryAcquire());
+                    info = node.getMBeanInfo(beanName);
+                }
+                this.beanIndex++;
+                keys.addAll(beanName.getKeyPropertyList().keySet());
                 MBeanAttributeInfo[] attrInfo = info.getAttributes();
                 for (MBeanAttributeInfo attr: attrInfo) {
-                    if (attributes.contains(attr.getName())) {
-                        continue;
+                    if (!attributes.containsKey(attr.getName())) {
+                        attributes.put(attr.getName(), JmxTranslator.getRuntimeType(attr.getType()));
                     }
-                    String type = JmxTranslator.getRuntimeType(attr.getType());
-                    this.resultDDL.append(", ");
-                    this.resultDDL.append(SQLStringVisitor.escapeSinglePart(attr.getName())).append(" ").append(type);
-                    attributes.add(attr.getName());
                 }
             }
-            this.resultDDL.append(") OPTIONS (UPDATABLE false, NAMEINSOURCE '").append(objectName).append("') ON jmx");
-        } catch (MalformedObjectNameException | InstanceNotFoundException | IntrospectionException | ReflectionException
-                | IOException e) {
+        } catch (InstanceNotFoundException | IntrospectionException | ReflectionException | IOException e) {
             throw new TranslatorException(e);
         }
     }
 
+    private static void throttle(long wait) throws DataNotAvailableException {
+        if (wait > 0) {
+            throw new DataNotAvailableException(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+        }
+    }
+
+    private void appendColumns() {
+        boolean multiNode = conn.factory.isMultiNode();
+        if (multiNode) {
+            this.resultDDL.append(", ").append(SQLStringVisitor.escapeSinglePart(JmxTranslator.NODE_COLUMN)).append(" string");
+        }
+        for (Map.Entry<String, String> attr : attributes.entrySet()) {
+            this.resultDDL.append(", ");
+            this.resultDDL.append(SQLStringVisitor.escapeSinglePart(attr.getKey())).append(" ").append(attr.getValue());
+            this.resultDDL.append(" OPTIONS (SEARCHABLE 'UNSEARCHABLE')");
+        }
+        // the key properties are exposed as columns so that they may be used to narrow the pattern
+        for (String key : keys) {
+            String column = JmxTranslator.getKeyColumnName(key);
+            if (column.equalsIgnoreCase(JmxTranslator.OBJECT_NAME_COLUMN) || attributes.containsKey(column)
+                    || (multiNode && column.equalsIgnoreCase(JmxTranslator.NODE_COLUMN))) {
+                continue;
+            }
+            this.resultDDL.append(", ");
+            this.resultDDL.append(SQLStringVisitor.escapeSinglePart(column)).append(" string OPTIONS (");
+            this.resultDDL.append(JmxTranslator.KEY_PROPERTY).append(" '").append(key.replace("'", "''")).append("'");
+            this.resultDDL.append(")");
+        }
+        this.resultDDL.append(") OPTIONS (UPDATABLE false, NAMEINSOURCE '").append(objectName).append("') ON jmx");
+    }
+
     @Override
     public List<?> next() throws TranslatorException, DataNotAvailableException {
         if (!this.served) {
+            scan();
+            appendColumns();
             this.served = true;
             return Arrays.asList(this.resultDDL.toString());
         }
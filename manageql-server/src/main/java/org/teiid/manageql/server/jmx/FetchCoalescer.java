@@ -0,0 +1,253 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.AttributeList;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Shares JMX calls between concurrent executions, so that many clients polling the same beans at
+ * the same moment cost about one round trip.
+ * <p>
+ * A call for the same ObjectName and attributes that is already in flight is joined rather than
+ * issued again.  With a window, a call that completed successfully within that many milliseconds
+ * is reused as well.
+ * <p>
+ * A call runs on the thread of the execution that issued it.  If it fails because that thread was
+ * interrupted, such as by a cancelled query or attribute timeout, the executions that joined it issue
+ * the call again rather than fail as well.
+ */
+public class FetchCoalescer {
+
+    // expired entries are only swept once there are this many
+    private static final int SWEEP_SIZE = 1024;
+
+    private static final class Key {
+        final ObjectName name;
+        // null for a query of the names
+        final String[] attributes;
+        final int hash;
+
+        Key(ObjectName name, String[] attributes) {
+            this.name = name;
+            this.attributes = attributes;
+            this.hash = name.hashCode() * 31 + Arrays.hashCode(attributes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key)obj;
+            return name.equals(other.name) && Arrays.equals(attributes, other.attributes);
+        }
+    }
+
+    private static final class Flight<T> extends FutureTask<T> {
+        volatile long completed;
+        volatile boolean failed;
+        // failed by the interruption of the thread running it
+        volatile boolean interrupted;
+
+        Flight(Callable<T> call) {
+            super(call);
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            this.failed = true;
+            this.interrupted = Thread.currentThread().isInterrupted() || isInterruption(t);
+            super.setException(t);
+        }
+
+        @Override
+        protected void done() {
+            this.completed = System.nanoTime();
+        }
+    }
+
+    private final Map<Key, Flight<?>> flights = new ConcurrentHashMap<Key, Flight<?>>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private volatile long windowNanos;
+
+    /**
+     * Sets the milliseconds a completed call may be reused for, 0 only shares calls that are in flight
+     */
+    public void setWindow(long window) {
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(window);
+    }
+
+    public long getWindow() {
+        return TimeUnit.NANOSECONDS.toMillis(windowNanos);
+    }
+
+    public AttributeList getAttributes(final MBeanServerConnection mbsc, final ObjectName name,
+            final String[] attributes) throws InstanceNotFoundException, ReflectionException, IOException {
+        return call(new Key(name, attributes), () -> mbsc.getAttributes(name, attributes));
+    }
+
+    public Set<ObjectName> queryNames(final MBeanServerConnection mbsc, final ObjectName name)
+            throws IOException {
+        try {
+            return call(new Key(name, null), () -> mbsc.queryNames(name, null));
+        } catch (InstanceNotFoundException | ReflectionException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T call(Key key, Callable<T> call)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        this.requests.increment();
+        Flight<T> flight = new Flight<T>(call);
+        while (true) {
+            Flight<T> existing = (Flight<T>)this.flights.putIfAbsent(key, flight);
+            if (existing == null) {
+                break;
+            }
+            if (isReusable(existing)) {
+                this.hits.increment();
+                if (!isAbandoned(existing)) {
+                    return await(existing);
+                }
+                // the failed flight is no longer reusable, so it is replaced on the next pass
+                this.hits.decrement();
+                continue;
+            }
+            if (this.flights.replace(key, existing, flight)) {
+                break;
+            }
+        }
+        try {
+            flight.run();
+        } finally {
+            if (this.windowNanos <= 0 || flight.failed) {
+                this.flights.remove(key, flight);
+            } else if (this.flights.size() > SWEEP_SIZE) {
+                sweep();
+            }
+        }
+        return await(flight);
+    }
+
+    private boolean isReusable(Flight<?> flight) {
+        if (!flight.isDone()) {
+            return true;
+        }
+        return !flight.failed && System.nanoTime() - flight.completed <= this.windowNanos;
+    }
+
+    /**
+     * Wait for the flight to complete
+     * @return true if it failed only because the thread running it was interrupted
+     */
+    private static boolean isAbandoned(Flight<?> flight) throws InterruptedIOException {
+        try {
+            flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            return flight.interrupted;
+        }
+        return false;
+    }
+
+    private static boolean isInterruption(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (t instanceof InterruptedException || t instanceof InterruptedIOException
+                    || t instanceof ClosedByInterruptException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void sweep() {
+        for (Map.Entry<Key, Flight<?>> entry : this.flights.entrySet()) {
+            if (!isReusable(entry.getValue())) {
+                this.flights.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private static <T> T await(Flight<T> flight)
+            throws InstanceNotFoundException, ReflectionException, IOException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InstanceNotFoundException) {
+                throw (InstanceNotFoundException)cause;
+            }
+            if (cause instanceof ReflectionException) {
+                throw (ReflectionException)cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * @return the number of calls requested
+     */
+    public long getRequests() {
+        return this.requests.sum();
+    }
+
+    /**
+     * @return the number of calls that were served by another in flight or recent call
+     */
+    public long getHits() {
+        return this.hits.sum();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.teiid.language.QueryExpression;
+import org.teiid.language.Select;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ResultSetExecution;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Reads the {@link HistorySampler#HISTORY_TABLE} table.  Predicates against the timestamp
+ * narrow the range read from the buffer, all predicates are then checked against each sample.
+ */
+public class HistoryExecution implements ResultSetExecution {
+
+    public static final String TIMESTAMP_COLUMN = "ts";
+    public static final String NODE_COLUMN = "node";
+    public static final String OBJECT_NAME_COLUMN = "object_name";
+    public static final String ATTRIBUTE_COLUMN = "attribute";
+    public static final String VALUE_COLUMN = "sample_value";
+
+    private final Select command;
+    private final HistorySampler sampler;
+    private final JmxSelectVistor visitor = new JmxSelectVistor();
+    private List<ColumnPredicate> predicates;
+    private Iterator<HistorySampler.Sample> samples;
+    private String[] columnNames;
+    // the rows when ordered or limited
+    private Iterator<List<?>> rows;
+
+    public HistoryExecution(QueryExpression command, HistorySampler sampler) {
+        this.command = (Select)command;
+        this.sampler = sampler;
+        this.visitor.visitNode(this.command);
+    }
+
+    @Override
+    public void execute() throws TranslatorException {
+        this.predicates = this.visitor.getPredicates();
+        this.columnNames = this.visitor.getColumnNames();
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (ColumnPredicate predicate : this.predicates) {
+            if (!predicate.getColumn().equalsIgnoreCase(TIMESTAMP_COLUMN) || predicate.isNegated()) {
+                continue;
+            }
+            Object value = predicate.getValues().get(0);
+            if (!(value instanceof java.util.Date)) {
+                continue;
+            }
+            long time = ((java.util.Date)value).getTime();
+            switch (predicate.getOperator()) {
+            case EQ:
+                from = Math.max(from, time);
+                to = Math.min(to, time);
+                break;
+            case GT:
+            case GE:
+                from = Math.max(from, time);
+                break;
+            case LT:
+            case LE:
+                to = Math.min(to, time);
+                break;
+            default:
+                break;
+            }
+        }
+        if (from > to || this.sampler == null) {
+            this.samples = new ArrayList<HistorySampler.Sample>(0).iterator();
+        } else {
+            this.samples = this.sampler.getSamples(from, to).iterator();
+        }
+        int[] sortColumns = this.visitor.getSortColumns();
+        if (sortColumns.length > 0 || this.visitor.getRowLimit() >= 0) {
+            RowSorter sorter = new RowSorter(sortColumns, this.visitor.getSortDescending(),
+                    this.visitor.getRowOffset(), this.visitor.getRowLimit());
+            while (!sorter.isFull()) {
+                List<?> row = readRow();
+                if (row == null) {
+                    break;
+                }
+                sorter.add(row);
+            }
+            this.rows = sorter.getRows().iterator();
+        }
+    }
+
+    @Override
+    public List<?> next() throws TranslatorException, DataNotAvailableException {
+        if (this.rows != null) {
+            return this.rows.hasNext() ? this.rows.next() : null;
+        }
+        return readRow();
+    }
+
+    private List<?> readRow() {
+        while (this.samples.hasNext()) {
+            HistorySampler.Sample sample = this.samples.next();
+            if (matches(sample)) {
+                Object[] row = new Object[this.columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = getValue(sample, this.columnNames[i]);
+                }
+                return Arrays.asList(row);
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(HistorySampler.Sample sample) {
+        for (ColumnPredicate predicate : this.predicates) {
+            if (!predicate.matches(getValue(sample, predicate.getColumn()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object getValue(HistorySampler.Sample sample, String column) {
+        if (column.equalsIgnoreCase(TIMESTAMP_COLUMN)) {
+            return new Timestamp(sample.getTime());
+        } else if (column.equalsIgnoreCase(NODE_COLUMN)) {
+            return sample.getNode();
+        } else if (column.equalsIgnoreCase(OBJECT_NAME_COLUMN)) {
+            return sample.getObjectName();
+        } else if (column.equalsIgnoreCase(ATTRIBUTE_COLUMN)) {
+            return sample.getAttribute();
+        } else if (column.equalsIgnoreCase(VALUE_COLUMN)) {
+            return sample.getValue();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        this.samples = null;
+        this.rows = null;
+    }
+
+    @Override
+    public void cancel() throws TranslatorException {
+    }
+}
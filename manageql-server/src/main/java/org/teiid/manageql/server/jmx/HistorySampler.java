@@ -0,0 +1,350 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.openmbean.CompositeData;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * Periodically samples numeric attributes into a fixed size ring buffer, which is exposed
+ * as the {@link #HISTORY_TABLE} table.
+ * <p>
+ * A sample is held in primitive arrays, a timestamp, a series id and a double value, so that the memory
+ * used is about 20 bytes times the capacity plus the names of the sampled series.  Once full the
+ * oldest samples are overwritten.  Attributes may address an item of a CompositeData value with a dot,
+ * such as <code>HeapMemoryUsage.used</code>.  Booleans are recorded as 0 or 1, other non-numeric
+ * values are ignored.
+ */
+public class HistorySampler {
+
+    public static final String HISTORY_TABLE = "jmx_history";
+    public static final int DEFAULT_CAPACITY = 100000;
+    public static final long DEFAULT_INTERVAL = 10000;
+    /**
+     * The maximum number of distinct node, ObjectName and attribute combinations tracked
+     */
+    public static final int MAX_SERIES = 10000;
+
+    /**
+     * The attributes to sample from the beans matching a pattern
+     */
+    public static class Spec {
+        private final ObjectName pattern;
+        private final String[] attributes;
+        private final String[] requested;
+
+        public Spec(ObjectName pattern, String... attributes) {
+            this.pattern = pattern;
+            this.attributes = attributes;
+            Set<String> names = new LinkedHashSet<String>();
+            for (String attribute : attributes) {
+                names.add(getBaseName(attribute));
+            }
+            this.requested = names.toArray(new String[names.size()]);
+        }
+
+        public ObjectName getPattern() {
+            return pattern;
+        }
+
+        public String[] getAttributes() {
+            return attributes;
+        }
+
+        @Override
+        public String toString() {
+            return pattern + "@" + Arrays.toString(attributes);
+        }
+    }
+
+    /**
+     * A single sample as returned by {@link HistorySampler#getSamples(long, long)}
+     */
+    public static class Sample {
+        private final long time;
+        private final String node;
+        private final String objectName;
+        private final String attribute;
+        private final double value;
+
+        Sample(long time, String node, String objectName, String attribute, double value) {
+            this.time = time;
+            this.node = node;
+            this.objectName = objectName;
+            this.attribute = attribute;
+            this.value = value;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public String getObjectName() {
+            return objectName;
+        }
+
+        public String getAttribute() {
+            return attribute;
+        }
+
+        public double getValue() {
+            return value;
+        }
+    }
+
+    private final List<JmxNode> nodes;
+    private final List<Spec> specs;
+    private final long interval;
+
+    // the ring buffer, guarded by this
+    private final long[] times;
+    private final int[] seriesIds;
+    private final double[] values;
+    private int next;
+    private int size;
+    private long lastTime;
+
+    // the series names by id, guarded by this
+    private final List<String[]> series = new ArrayList<String[]>();
+    private final Map<String, Integer> seriesByName = new HashMap<String, Integer>();
+    private boolean seriesLimitLogged;
+
+    private ScheduledExecutorService executor;
+
+    public HistorySampler(List<JmxNode> nodes, List<Spec> specs, long interval, int capacity) {
+        if (capacity <= 0 || interval <= 0) {
+            throw new IllegalArgumentException("The history capacity and interval must be positive");
+        }
+        this.nodes = nodes;
+        this.specs = specs;
+        this.interval = interval;
+        this.times = new long[capacity];
+        this.seriesIds = new int[capacity];
+        this.values = new double[capacity];
+    }
+
+    /**
+     * Parse specs of the form <code>pattern@attribute|attribute;pattern@attribute</code>
+     */
+    public static List<Spec> parse(String config) throws MalformedObjectNameException {
+        List<Spec> result = new ArrayList<Spec>();
+        for (String part : config.split(";")) {
+            part = part.trim();
+            if (part.isEmpty()) {
+                continue;
+            }
+            int index = part.lastIndexOf('@');
+            if (index <= 0 || index == part.length() - 1) {
+                throw new MalformedObjectNameException("Expected pattern@attribute|attribute, but was " + part);
+            }
+            result.add(new Spec(new ObjectName(part.substring(0, index)), part.substring(index + 1).split("\\|")));
+        }
+        return result;
+    }
+
+    static String getBaseName(String attribute) {
+        int index = attribute.indexOf('.');
+        return index < 0 ? attribute : attribute.substring(0, index);
+    }
+
+    public synchronized void start() {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new JmxConnectionFactory.NamedThreadFactory("manageql-history"));
+        this.executor.scheduleWithFixedDelay(() -> {
+            try {
+                sample();
+            } catch (Throwable e) {
+                LogManager.logDetail(LogConstants.CTX_CONNECTOR, e, "Could not sample the history");
+            }
+        }, 0, this.interval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void close() {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    public long getInterval() {
+        return interval;
+    }
+
+    public int getCapacity() {
+        return times.length;
+    }
+
+    /**
+     * Take one sample of every configured attribute from every node
+     */
+    public void sample() {
+        for (JmxNode node : this.nodes) {
+            try {
+                sample(node);
+            } catch (IOException e) {
+                LogManager.logDetail(LogConstants.CTX_CONNECTOR, e, "Could not sample the history of", node);
+            }
+        }
+    }
+
+    private void sample(JmxNode node) throws IOException {
+        MBeanServerConnection mbsc = node.getConnection();
+        List<String> names = new ArrayList<String>();
+        List<String> attributes = new ArrayList<String>();
+        List<Double> sampled = new ArrayList<Double>();
+        for (Spec spec : this.specs) {
+            for (ObjectName name : mbsc.queryNames(spec.pattern, null)) {
+                Map<String, Object> current = new HashMap<String, Object>();
+                try {
+                    for (Object o : mbsc.getAttributes(name, spec.requested)) {
+                        Attribute a = (Attribute)o;
+                        current.put(a.getName(), a.getValue());
+                    }
+                } catch (InstanceNotFoundException | ReflectionException e) {
+                    continue;
+                }
+                String canonicalName = name.getCanonicalName();
+                for (String attribute : spec.attributes) {
+                    Object value = current.get(getBaseName(attribute));
+                    if (value instanceof CompositeData && attribute.length() > getBaseName(attribute).length()) {
+                        CompositeData data = (CompositeData)value;
+                        String item = attribute.substring(getBaseName(attribute).length() + 1);
+                        value = data.containsKey(item) ? data.get(item) : null;
+                    }
+                    Double number = toDouble(value);
+                    if (number != null) {
+                        names.add(canonicalName);
+                        attributes.add(attribute);
+                        sampled.add(number);
+                    }
+                }
+            }
+        }
+        record(System.currentTimeMillis(), node.getName(), names, attributes, sampled);
+    }
+
+    private static Double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number)value).doubleValue();
+        }
+        if (value instanceof Boolean) {
+            return ((Boolean)value) ? 1d : 0d;
+        }
+        return null;
+    }
+
+    synchronized void record(long time, String node, List<String> names, List<String> attributes,
+            List<Double> sampled) {
+        // keep the buffer ordered by time even if the clock is adjusted
+        time = Math.max(time, this.lastTime);
+        this.lastTime = time;
+        for (int i = 0; i < sampled.size(); i++) {
+            int id = getSeriesId(node, names.get(i), attributes.get(i));
+            if (id < 0) {
+                continue;
+            }
+            this.times[this.next] = time;
+            this.seriesIds[this.next] = id;
+            this.values[this.next] = sampled.get(i);
+            this.next = (this.next + 1) % this.times.length;
+            if (this.size < this.times.length) {
+                this.size++;
+            }
+        }
+    }
+
+    private int getSeriesId(String node, String name, String attribute) {
+        String key = node + '\u0000' + name + '\u0000' + attribute;
+        Integer id = this.seriesByName.get(key);
+        if (id != null) {
+            return id;
+        }
+        if (this.series.size() >= MAX_SERIES) {
+            if (!this.seriesLimitLogged) {
+                this.seriesLimitLogged = true;
+                LogManager.logWarning(LogConstants.CTX_CONNECTOR, "The history is limited to " + MAX_SERIES
+                        + " series, new node, ObjectName and attribute combinations will not be sampled");
+            }
+            return -1;
+        }
+        id = this.series.size();
+        this.series.add(new String[] {node, name, attribute});
+        this.seriesByName.put(key, id);
+        return id;
+    }
+
+    /**
+     * @return the samples in time order from the inclusive range
+     */
+    public synchronized List<Sample> getSamples(long from, long to) {
+        List<Sample> result = new ArrayList<Sample>();
+        int start = this.size < this.times.length ? 0 : this.next;
+        // binary search for the first sample at or after from
+        int low = 0;
+        int high = this.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (this.times[(start + mid) % this.times.length] < from) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        for (int i = low; i < this.size; i++) {
+            int index = (start + i) % this.times.length;
+            long time = this.times[index];
+            if (time > to) {
+                break;
+            }
+            String[] names = this.series.get(this.seriesIds[index]);
+            result.add(new Sample(time, names[0], names[1], names[2], this.values[index]));
+        }
+        return result;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+}
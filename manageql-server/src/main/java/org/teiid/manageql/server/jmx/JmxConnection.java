@@ -17,16 +17,38 @@
  */
 package org.teiid.manageql.server.jmx;
 
+import java.io.IOException;
+import java.util.List;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanInfo;
 import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
 
 import org.teiid.resource.api.Connection;
 
 public class JmxConnection implements Connection {
 
 	MBeanServerConnection mbsc;
+	JmxConnectionFactory factory;
 	
-	public JmxConnection(MBeanServerConnection mbsc) {
+	public JmxConnection(MBeanServerConnection mbsc, JmxConnectionFactory factory) {
 		this.mbsc = mbsc;
+		this.factory = factory;
+	}
+
+	/**
+	 * Get the MBeanInfo of the first node via the shared cache
+	 */
+	public MBeanInfo getMBeanInfo(ObjectName name)
+			throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+		return factory.getNodes().get(0).getMBeanInfo(name);
+	}
+
+	public List<JmxNode> getNodes() {
+		return factory.getNodes();
 	}
 
 	@Override
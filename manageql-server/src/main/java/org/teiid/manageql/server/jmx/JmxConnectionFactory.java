@@ -17,21 +17,355 @@
  */
 package org.teiid.manageql.server.jmx;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import javax.management.MBeanServerConnection;
 
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
 import org.teiid.resource.api.ConnectionFactory;
 
 public class JmxConnectionFactory implements ConnectionFactory<JmxConnection> {
 
-	private final MBeanServerConnection serverConnection;
+	public static final int DEFAULT_FETCH_WINDOW = 64;
+	public static final long DEFAULT_NODE_TIMEOUT = 30000;
+	// the getters still running past their timeout are bounded, further reads are treated as timed out
+	static final int MAX_ATTRIBUTE_THREADS = 64;
+
+	private final List<JmxNode> nodes;
+	private int fetchThreads;
+	private int fetchWindow = DEFAULT_FETCH_WINDOW;
+	private long nodeTimeout = DEFAULT_NODE_TIMEOUT;
+	private boolean virtualThreads;
+	private ExecutorService fetchExecutor;
+	private ExecutorService nodeExecutor;
+	private long attributeTimeout;
+	private int threadMaxDepth;
+	private ExecutorService attributeExecutor;
+	private final SlowAttributes slowAttributes = new SlowAttributes();
+	private HistorySampler historySampler;
+	private NotificationCollector notificationCollector;
+	private final ManageQLMetrics metrics = new ManageQLMetrics(this);
+	private final QueryGovernor governor = new QueryGovernor();
 
 	public JmxConnectionFactory(MBeanServerConnection serverConnection) {
-		this.serverConnection = serverConnection;
+		this(Collections.singletonList(new JmxNode(JmxNode.LOCAL, serverConnection)));
+	}
+
+	/**
+	 * @param nodes the JVMs to query, a query is executed against all of them concurrently
+	 */
+	public JmxConnectionFactory(List<JmxNode> nodes) {
+		if (nodes.isEmpty()) {
+			throw new IllegalArgumentException("At least one node is required");
+		}
+		this.nodes = Collections.unmodifiableList(nodes);
+		for (JmxNode node : nodes) {
+			node.setMetrics(metrics);
+		}
 	}
 
 	@Override
 	public JmxConnection getConnection() throws Exception {
-		return new JmxConnection(serverConnection);
+		return new JmxConnection(nodes.get(0).getConnection(), this);
+	}
+
+	/**
+	 * @return the governor limiting the load of the queries, without limits by default
+	 */
+	public QueryGovernor getGovernor() {
+		return governor;
+	}
+
+	public ManageQLMetrics getMetrics() {
+		return metrics;
+	}
+
+	public List<JmxNode> getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * @return true if there is more than one node, and so tables have a "$Node" column
+	 */
+	public boolean isMultiNode() {
+		return nodes.size() > 1;
+	}
+
+	/**
+	 * The milliseconds to wait for each node when querying many nodes, the results of nodes
+	 * that take longer are omitted with a warning.
+	 */
+	public void setNodeTimeout(long nodeTimeout) {
+		this.nodeTimeout = nodeTimeout;
+	}
+
+	public long getNodeTimeout() {
+		return nodeTimeout;
+	}
+
+	/**
+	 * The milliseconds a completed remote call may be shared with other executions, 0 only shares
+	 * the calls that are in flight.
+	 */
+	public void setCoalesceWindow(long coalesceWindow) {
+		for (JmxNode node : nodes) {
+			if (node.getCoalescer() != null) {
+				node.getCoalescer().setWindow(coalesceWindow);
+			}
+		}
+	}
+
+	/**
+	 * @return the number of remote calls requested by executions
+	 */
+	public long getCoalescedRequests() {
+		long result = 0;
+		for (JmxNode node : nodes) {
+			if (node.getCoalescer() != null) {
+				result += node.getCoalescer().getRequests();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of remote calls served by a call shared with another execution
+	 */
+	public long getCoalescedHits() {
+		long result = 0;
+		for (JmxNode node : nodes) {
+			if (node.getCoalescer() != null) {
+				result += node.getCoalescer().getHits();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The milliseconds to wait for the attributes of an MBean, those that take longer are returned as
+	 * null with a warning and later read on their own.  0, the default, waits for the attributes.
+	 */
+	public void setAttributeTimeout(long attributeTimeout) {
+		this.attributeTimeout = attributeTimeout;
+	}
+
+	public long getAttributeTimeout() {
+		return attributeTimeout;
+	}
+
+	/**
+	 * The most stack frames read of each thread for the thread frames table, 0, the default, reads the
+	 * whole stack.
+	 */
+	public void setThreadMaxDepth(int threadMaxDepth) {
+		this.threadMaxDepth = threadMaxDepth;
+	}
+
+	public int getThreadMaxDepth() {
+		return threadMaxDepth;
+	}
+
+	/**
+	 * @return the attributes that have missed the attribute timeout
+	 */
+	public SlowAttributes getSlowAttributes() {
+		return slowAttributes;
+	}
+
+	/**
+	 * When true, and running on Java 21 or later, the blocking JMX calls are made on virtual threads
+	 * rather than on the fetch and node thread pools.
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		if (virtualThreads && !VirtualThreads.isSupported()) {
+			LogManager.logWarning(LogConstants.CTX_CONNECTOR,
+					"Virtual threads require Java 21 or later, platform threads will be used");
+		}
+		this.virtualThreads = virtualThreads;
 	}
 
+	/**
+	 * @return true if virtual threads were requested and are supported
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads && VirtualThreads.isSupported();
+	}
+
+	/**
+	 * The number of threads used to fetch attributes concurrently.  0, the default, fetches on the
+	 * calling thread, which is best for an in process MBeanServer.
+	 */
+	public void setFetchThreads(int fetchThreads) {
+		this.fetchThreads = fetchThreads;
+	}
+
+	public int getFetchThreads() {
+		return fetchThreads;
+	}
+
+	/**
+	 * The number of beans to read ahead of the engine when fetching concurrently.
+	 */
+	public void setFetchWindow(int fetchWindow) {
+		this.fetchWindow = fetchWindow;
+	}
+
+	public int getFetchWindow() {
+		return fetchWindow;
+	}
+
+	/**
+	 * @return the executor for concurrent attribute fetches, or null if fetches should be performed
+	 * on the calling thread
+	 */
+	synchronized ExecutorService getFetchExecutor() {
+		if (fetchThreads <= 0) {
+			return null;
+		}
+		if (fetchExecutor == null && isVirtualThreads()) {
+			// the fetch window still bounds the concurrent fetches of each query
+			fetchExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+		}
+		if (fetchExecutor == null) {
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(fetchThreads, fetchThreads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("manageql-fetch"));
+			executor.allowCoreThreadTimeOut(true);
+			fetchExecutor = executor;
+		}
+		return fetchExecutor;
+	}
+
+	/**
+	 * @return the executor querying the nodes concurrently, it is separate from the fetch executor
+	 * as the node tasks wait on the fetches
+	 */
+	synchronized ExecutorService getNodeExecutor() {
+		if (nodeExecutor == null && isVirtualThreads()) {
+			nodeExecutor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+		}
+		if (nodeExecutor == null) {
+			int threads = nodes.size() * 2;
+			ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory("manageql-node"));
+			executor.allowCoreThreadTimeOut(true);
+			nodeExecutor = executor;
+		}
+		return nodeExecutor;
+	}
+
+	/**
+	 * @return the executor reading attributes under the attribute timeout, it does not queue so that a
+	 * read is never delayed by the slow getters still running.  With virtual threads the getters are
+	 * still bounded, as one that never returns holds its thread either way.
+	 */
+	synchronized ExecutorService getAttributeExecutor() {
+		if (attributeExecutor == null) {
+			ThreadFactory threadFactory = null;
+			if (isVirtualThreads()) {
+				threadFactory = VirtualThreads.newThreadFactory("manageql-attribute");
+			}
+			if (threadFactory == null) {
+				threadFactory = new NamedThreadFactory("manageql-attribute");
+			}
+			attributeExecutor = new ThreadPoolExecutor(0, MAX_ATTRIBUTE_THREADS, 60, TimeUnit.SECONDS,
+					new SynchronousQueue<Runnable>(), threadFactory);
+		}
+		return attributeExecutor;
+	}
+
+	/**
+	 * @return the MBeanInfo cache of the first node
+	 */
+	public MBeanInfoCache getMBeanInfoCache() {
+		return nodes.get(0).getMBeanInfoCache();
+	}
+
+	/**
+	 * @return a value that changes whenever an MBean is registered or unregistered on any node,
+	 * or -1 if registrations are not being tracked
+	 */
+	public long getRegistrationGeneration() {
+		long result = 0;
+		for (JmxNode node : nodes) {
+			long generation = node.getMBeanInfoCache().getGeneration();
+			if (generation < 0) {
+				return -1;
+			}
+			result += generation;
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the sampler backing the history table, the factory takes ownership and closes it
+	 */
+	public synchronized void setHistorySampler(HistorySampler historySampler) {
+		this.historySampler = historySampler;
+	}
+
+	public synchronized HistorySampler getHistorySampler() {
+		return historySampler;
+	}
+
+	/**
+	 * Sets the collector backing the notifications table, the factory takes ownership and closes it
+	 */
+	public synchronized void setNotificationCollector(NotificationCollector notificationCollector) {
+		this.notificationCollector = notificationCollector;
+	}
+
+	public synchronized NotificationCollector getNotificationCollector() {
+		return notificationCollector;
+	}
+
+	public synchronized void close() {
+		if (notificationCollector != null) {
+			notificationCollector.close();
+			notificationCollector = null;
+		}
+		if (historySampler != null) {
+			historySampler.close();
+			historySampler = null;
+		}
+		for (JmxNode node : nodes) {
+			node.close();
+		}
+		if (fetchExecutor != null) {
+			fetchExecutor.shutdownNow();
+			fetchExecutor = null;
+		}
+		if (nodeExecutor != null) {
+			nodeExecutor.shutdownNow();
+			nodeExecutor = null;
+		}
+		if (attributeExecutor != null) {
+			attributeExecutor.shutdownNow();
+			attributeExecutor = null;
+		}
+	}
+
+	static class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
+
+		NamedThreadFactory(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + "-" + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
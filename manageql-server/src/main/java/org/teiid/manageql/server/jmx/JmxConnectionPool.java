@@ -0,0 +1,296 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * Maintains a small pool of {@link JMXConnector}s to one remote JVM behind a single
+ * {@link MBeanServerConnection}.
+ * <p>
+ * Reads are spread round robin over the pool, so that concurrent queries do not share one RMI channel.
+ * A connector that fails, either by a connection notification or an IOException from a call, is
+ * reconnected in the background with exponential backoff, and a failed read is retried on another
+ * connector.  Notification listeners are always registered through the first connector, the
+ * {@link PooledConnection#addReconnectListener(Runnable) reconnect listeners} are told when it is
+ * replaced, or notifications were lost, so that listeners can be added again.
+ */
+public class JmxConnectionPool {
+
+    public static final int DEFAULT_SIZE = 2;
+    public static final long DEFAULT_INITIAL_BACKOFF = 1000;
+    public static final long MAX_BACKOFF = 60000;
+
+    /**
+     * The connection handed out by the pool
+     */
+    public interface PooledConnection extends MBeanServerConnection {
+
+        /**
+         * @param listener called after the connection used for notification listeners has been replaced
+         * or notifications have been lost
+         */
+        void addReconnectListener(Runnable listener);
+
+    }
+
+    private class Slot implements NotificationListener {
+        final int index;
+        volatile JMXConnector connector;
+        volatile MBeanServerConnection connection;
+        final AtomicBoolean reconnecting = new AtomicBoolean();
+        int attempts;
+
+        Slot(int index) {
+            this.index = index;
+        }
+
+        void connect() throws IOException {
+            JMXConnector newConnector = JMXConnectorFactory.connect(url, environment);
+            newConnector.addConnectionNotificationListener(this, null, null);
+            this.connector = newConnector;
+            this.connection = newConnector.getMBeanServerConnection();
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (closed) {
+                return;
+            }
+            String type = notification.getType();
+            if (JMXConnectionNotification.FAILED.equals(type) || JMXConnectionNotification.CLOSED.equals(type)) {
+                failed(this);
+            } else if (JMXConnectionNotification.NOTIFS_LOST.equals(type) && this.index == 0) {
+                fireReconnected();
+            }
+        }
+    }
+
+    private final JMXServiceURL url;
+    private final Map<String, ?> environment;
+    private final Slot[] slots;
+    private final long initialBackoff;
+    private final AtomicInteger next = new AtomicInteger();
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<Runnable>();
+    private final ScheduledExecutorService reconnector = Executors.newSingleThreadScheduledExecutor(
+            new JmxConnectionFactory.NamedThreadFactory("manageql-reconnect"));
+    private final PooledConnection connection;
+    private volatile boolean closed;
+
+    public JmxConnectionPool(JMXServiceURL url, Map<String, ?> environment, int size) {
+        this(url, environment, size, DEFAULT_INITIAL_BACKOFF);
+    }
+
+    public JmxConnectionPool(JMXServiceURL url, Map<String, ?> environment, int size, long initialBackoff) {
+        this.url = url;
+        this.environment = environment;
+        this.slots = new Slot[Math.max(1, size)];
+        for (int i = 0; i < this.slots.length; i++) {
+            this.slots[i] = new Slot(i);
+        }
+        this.initialBackoff = initialBackoff;
+        this.connection = (PooledConnection)Proxy.newProxyInstance(PooledConnection.class.getClassLoader(),
+                new Class<?>[] {PooledConnection.class}, new Handler());
+    }
+
+    /**
+     * Open the connectors, the first must succeed, the others are retried in the background
+     */
+    public void connect() throws IOException {
+        this.slots[0].connect();
+        for (int i = 1; i < this.slots.length; i++) {
+            try {
+                this.slots[i].connect();
+            } catch (IOException e) {
+                failed(this.slots[i]);
+            }
+        }
+    }
+
+    public PooledConnection getConnection() {
+        return this.connection;
+    }
+
+    /**
+     * @return the number of connectors currently connected
+     */
+    public int getConnectedCount() {
+        int result = 0;
+        for (Slot slot : this.slots) {
+            if (slot.connection != null) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    public void close() {
+        this.closed = true;
+        this.reconnector.shutdownNow();
+        for (Slot slot : this.slots) {
+            closeQuietly(slot);
+        }
+    }
+
+    private static void closeQuietly(Slot slot) {
+        JMXConnector connector = slot.connector;
+        slot.connection = null;
+        slot.connector = null;
+        if (connector != null) {
+            try {
+                connector.removeConnectionNotificationListener(slot);
+            } catch (Exception e) {
+                // already removed
+            }
+            try {
+                connector.close();
+            } catch (IOException e) {
+                // already broken
+            }
+        }
+    }
+
+    void failed(Slot slot) {
+        if (this.closed || !slot.reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        slot.connection = null;
+        LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Lost JMX connection " + slot.index + " to " + this.url
+                + ", reconnecting");
+        scheduleReconnect(slot);
+    }
+
+    private void scheduleReconnect(final Slot slot) {
+        long delay = Math.min(MAX_BACKOFF, this.initialBackoff << Math.min(slot.attempts, 16));
+        try {
+            this.reconnector.schedule(() -> reconnect(slot), delay, TimeUnit.MILLISECONDS);
+        } catch (java.util.concurrent.RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void reconnect(Slot slot) {
+        if (this.closed) {
+            return;
+        }
+        closeQuietly(slot);
+        try {
+            slot.connect();
+        } catch (IOException e) {
+            slot.attempts++;
+            LogManager.logDetail(LogConstants.CTX_CONNECTOR, e, "Could not reconnect to", this.url);
+            scheduleReconnect(slot);
+            return;
+        }
+        slot.attempts = 0;
+        slot.reconnecting.set(false);
+        LogManager.logInfo(LogConstants.CTX_CONNECTOR, "Reconnected JMX connection " + slot.index + " to " + this.url);
+        if (slot.index == 0) {
+            fireReconnected();
+        }
+    }
+
+    private void fireReconnected() {
+        for (Runnable listener : this.reconnectListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Reconnect listener failed: " + e);
+            }
+        }
+    }
+
+    private static boolean isRead(String methodName) {
+        return methodName.startsWith("get") || methodName.startsWith("query") || methodName.startsWith("is");
+    }
+
+    private class Handler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (method.getDeclaringClass() == Object.class) {
+                switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "JmxConnectionPool[" + url + "]";
+                }
+            }
+            if (method.getDeclaringClass() == PooledConnection.class) {
+                reconnectListeners.add((Runnable)args[0]);
+                return null;
+            }
+            // listeners must be removed from the connection they were added to
+            boolean primaryOnly = name.endsWith("NotificationListener");
+            boolean retry = !primaryOnly && isRead(name);
+            int start = primaryOnly ? 0 : Math.floorMod(next.getAndIncrement(), slots.length);
+            IOException failure = null;
+            for (int i = 0; i < slots.length; i++) {
+                Slot slot = slots[(start + i) % slots.length];
+                MBeanServerConnection target = slot.connection;
+                if (target != null) {
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        if (!(e.getCause() instanceof IOException)) {
+                            throw e.getCause();
+                        }
+                        failure = (IOException)e.getCause();
+                        failed(slot);
+                        if (!retry) {
+                            throw failure;
+                        }
+                    }
+                }
+                if (primaryOnly) {
+                    break;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            throw new IOException("No JMX connection is available to " + url);
+        }
+    }
+}
@@ -17,88 +17,149 @@
  */
 package org.teiid.manageql.server.jmx;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.lang.reflect.Array;
-import java.util.Map;
-import java.util.Map.Entry;
+import java.nio.charset.StandardCharsets;
 
 import javax.management.openmbean.CompositeData;
-import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.TabularData;
 
 import org.teiid.core.types.ClobImpl;
+import org.teiid.core.types.InputStreamFactory;
 import org.teiid.core.types.JsonType;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
 
+/**
+ * Serializes OpenType values to json.
+ * <p>
+ * The values are written with a streaming {@link JsonWriter} into a per thread buffer, and the
+ * json returned by {@link #converToJson(Object)} is only produced once the clob is read.
+ */
 public class JmxJsonUtil {
 
-    public static  Object converToJson(Object value) {
-        Gson gson = new GsonBuilder().create();
-        String json = gson.toJson(build(value));
-        return new JsonType(new ClobImpl(json));
+    private static final int MAX_RETAINED_BUFFER = 1 << 16;
+    private static final ThreadLocal<StringWriter> BUFFER = new ThreadLocal<StringWriter>();
+
+    /**
+     * Defers the serialization of the value until the clob is read, the value is expected
+     * to be immutable as OpenType data is.
+     */
+    public static Object converToJson(Object value) {
+        return new JsonType(new ClobImpl(new JsonStreamFactory(value), -1));
     }
 
-    private static JsonElement buildTabularData(TabularData data) {
-        @SuppressWarnings("unchecked")
-        JsonArray ja = new JsonArray();
-        for (Object entry : data.values()) {
-            ja.add(build(entry));
+    public static String toJson(Object value) {
+        StringWriter buffer = BUFFER.get();
+        if (buffer == null) {
+            buffer = new StringWriter(256);
+        } else {
+            BUFFER.remove();
+            buffer.getBuffer().setLength(0);
+        }
+        try {
+            JsonWriter writer = new JsonWriter(buffer);
+            writer.setLenient(true); // allow NaN and Infinity
+            writer.setHtmlSafe(true);
+            write(writer, value);
+            writer.flush();
+            return buffer.toString();
+        } catch (IOException e) {
+            // not expected from a StringWriter
+            throw new IllegalStateException(e);
+        } finally {
+            if (buffer.getBuffer().capacity() <= MAX_RETAINED_BUFFER) {
+                BUFFER.set(buffer);
+            }
         }
-        return ja;
     }
 
-    private static void jsonAdd(JsonObject jo, String key, Object value) {
-        if (value instanceof String) {
-            jo.addProperty(key, (String)value);
+    private static void write(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof CompositeData) {
+            CompositeData data = (CompositeData)value;
+            writer.beginObject();
+            for (String key : data.getCompositeType().keySet()) {
+                writer.name(key);
+                write(writer, data.get(key));
+            }
+            writer.endObject();
+        } else if (value instanceof TabularData) {
+            writer.beginArray();
+            for (Object entry : ((TabularData)value).values()) {
+                write(writer, entry);
+            }
+            writer.endArray();
+        } else if (value instanceof Object[]) {
+            writer.beginArray();
+            for (Object entry : (Object[])value) {
+                write(writer, entry);
+            }
+            writer.endArray();
+        } else if (value instanceof long[]) {
+            writer.beginArray();
+            for (long entry : (long[])value) {
+                writer.value(entry);
+            }
+            writer.endArray();
+        } else if (value.getClass().isArray()) {
+            writer.beginArray();
+            for (int i = 0; i < Array.getLength(value); i++) {
+                write(writer, Array.get(value, i));
+            }
+            writer.endArray();
+        } else if (value instanceof String) {
+            writer.value((String)value);
         } else if (value instanceof Boolean) {
-            jo.addProperty(key, (Boolean)value);
+            writer.value(((Boolean)value).booleanValue());
         } else if (value instanceof Number) {
-            jo.addProperty(key, (Number)value);
-        } else if (value instanceof Character) {
-            jo.addProperty(key, (Character)value);
+            writer.value((Number)value);
         } else {
-            jo.add(key, build(value));
+            writer.value(value.toString());
         }
     }
 
-    private static JsonElement buildCompositeData(CompositeData data) {
-        CompositeType type = data.getCompositeType();
-        JsonObject jo = new JsonObject();
-        for (String key: type.keySet()) {
-            Object value = data.get(key);
-            jsonAdd(jo, key, value);
+    private static class JsonStreamFactory extends InputStreamFactory {
+        private final Object value;
+        private volatile String json;
+
+        JsonStreamFactory(Object value) {
+            this.value = value;
         }
-        return jo;
-    }
 
-    private static JsonElement build(Object value) {
-        if (value instanceof CompositeData) {
-            return buildCompositeData((CompositeData)value);
-        } else if (value instanceof TabularData) {
-            return buildTabularData((TabularData)value);
-        } else if (value.getClass().isArray()) {
-            JsonArray jo = new JsonArray();
-            for(int i = 0; i < Array.getLength(value); i++){
-                jo.add(build(Array.get(value, i)));
-            }
-            return jo;
-        } else {
-            if (value instanceof String) {
-                return new JsonPrimitive((String)value);
-            } else if (value instanceof Boolean) {
-                return new JsonPrimitive((Boolean)value);
-            } else if (value instanceof Number) {
-                return new JsonPrimitive((Number)value);
-            } else if (value instanceof Character) {
-                return new JsonPrimitive((Character)value);
-            } else {
-                return new JsonPrimitive(value.toString());
+        private String getJson() {
+            String result = this.json;
+            if (result == null) {
+                result = toJson(this.value);
+                this.json = result;
             }
+            return result;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new ByteArrayInputStream(getJson().getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public Reader getCharacterStream() throws IOException {
+            return new StringReader(getJson());
+        }
+
+        @Override
+        public long getLength() {
+            return getJson().length();
+        }
+
+        @Override
+        public StorageMode getStorageMode() {
+            return StorageMode.MEMORY;
         }
     }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * A JVM being queried, identified by name.  In gateway mode there may be many, each becomes
+ * a value of the "$Node" column.
+ */
+public class JmxNode {
+
+    /**
+     * The name used for the in process MBeanServer
+     */
+    public static final String LOCAL = "local";
+
+    private final String name;
+    private final MBeanServerConnection connection;
+    private MBeanInfoCache infoCache;
+    private volatile ManageQLMetrics metrics;
+    private final FetchCoalescer coalescer;
+    private final List<Runnable> reconnectListeners = new CopyOnWriteArrayList<Runnable>();
+
+    public JmxNode(String name, MBeanServerConnection connection) {
+        this.name = name;
+        this.connection = connection;
+        this.coalescer = isLocal() ? null : new FetchCoalescer();
+        if (connection instanceof JmxConnectionPool.PooledConnection) {
+            ((JmxConnectionPool.PooledConnection)connection).addReconnectListener(this::reconnected);
+        }
+    }
+
+    /**
+     * @param listener called when notification listeners registered with this node have been lost
+     * and must be added again
+     */
+    public void addReconnectListener(Runnable listener) {
+        this.reconnectListeners.add(listener);
+    }
+
+    void reconnected() {
+        synchronized (this) {
+            if (infoCache != null) {
+                infoCache.restart();
+            }
+        }
+        for (Runnable listener : this.reconnectListeners) {
+            listener.run();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public MBeanServerConnection getConnection() {
+        return connection;
+    }
+
+    /**
+     * @return true if the connection is to an MBeanServer in this JVM
+     */
+    public boolean isLocal() {
+        return connection instanceof MBeanServer;
+    }
+
+    /**
+     * Sets the metrics that the calls to this node are recorded with
+     */
+    void setMetrics(ManageQLMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    ManageQLMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the coalescer that shares calls between concurrent executions, or null for the in
+     * process MBeanServer where calls are cheap
+     */
+    public FetchCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    /**
+     * @return the MBeanInfo cache for this node, listening for registrations is started on first use
+     */
+    public synchronized MBeanInfoCache getMBeanInfoCache() {
+        if (infoCache == null) {
+            ManageQLMetrics m = this.metrics;
+            infoCache = new MBeanInfoCache(connection, m == null ? null : m.getGetMBeanInfoHistogram());
+            infoCache.start();
+        }
+        return infoCache;
+    }
+
+    public MBeanInfo getMBeanInfo(ObjectName objectName)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        return getMBeanInfoCache().getMBeanInfo(objectName);
+    }
+
+    /**
+     * @return the cached MBeanInfo, or null if it would have to be fetched
+     */
+    public MBeanInfo getCachedMBeanInfo(ObjectName objectName) {
+        return getMBeanInfoCache().getCached(objectName);
+    }
+
+    public synchronized void close() {
+        if (infoCache != null) {
+            infoCache.close();
+            infoCache = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -18,28 +18,35 @@
 package org.teiid.manageql.server.jmx;
 
 import java.io.IOException;
-import java.lang.reflect.Array;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 
 import javax.management.Attribute;
-import javax.management.InstanceNotFoundException;
 import javax.management.MalformedObjectNameException;
-import javax.management.ObjectInstance;
 import javax.management.ObjectName;
-import javax.management.ReflectionException;
-import javax.management.openmbean.CompositeData;
-import javax.management.openmbean.TabularData;
-
-import org.teiid.core.types.DataTypeManager;
-import org.teiid.core.types.JsonType;
-import org.teiid.core.types.Transform;
-import org.teiid.core.types.TransformationException;
+import javax.management.QueryExp;
+
 import org.teiid.language.NamedTable;
 import org.teiid.language.QueryExpression;
 import org.teiid.language.Select;
 import org.teiid.language.visitor.SQLStringVisitor;
+import org.teiid.metadata.Column;
 import org.teiid.metadata.RuntimeMetadata;
 import org.teiid.metadata.Table;
 import org.teiid.translator.DataNotAvailableException;
@@ -54,9 +61,65 @@ public class JmxResultSetExecution implements ResultSetExecution {
     private ExecutionContext executionContext;
     private RuntimeMetadata metadata;
     private JmxConnection connection;
-    private ListIterator<ObjectName> resultRows;
+    private AttributeFetcher fetcher;
     JmxSelectVistor visitor;
 
+    private static class NodeResult {
+        final JmxNode node;
+        final List<AttributeFetcher.FetchedBean> beans;
+
+        NodeResult(JmxNode node, List<AttributeFetcher.FetchedBean> beans) {
+            this.node = node;
+            this.beans = beans;
+        }
+    }
+
+    // the node being read, with the results of each node when querying more than one
+    private JmxNode currentNode;
+    private List<NodeResult> nodeResults;
+    private Iterator<NodeResult> nodeIterator;
+    private Iterator<AttributeFetcher.FetchedBean> beanIterator;
+
+    // the work in flight, the engine thread is not held while waiting on it
+    private List<ObjectName> namePatterns;
+    private int chargedPatterns;
+    private Future<List<ObjectName>> pendingNames;
+    private List<JmxNode> nodes;
+    private List<Future<List<AttributeFetcher.FetchedBean>>> nodeFutures;
+    private long deadline;
+
+    // the statistics recorded once all of the rows have been read
+    private String tableName;
+    private long start;
+    private long rowCount;
+    private boolean recorded;
+    private QueryGovernor.Budget budget;
+
+    // the ordering and limit pushed down, applied to the names where possible, see trimNames
+    private int[] sortColumns;
+    private RowSorter sorter;
+    private Iterator<List<?>> sortedRows;
+    private long skip;
+    private long remaining = -1;
+
+    // the attribute timeout warnings, reported from the fetching threads
+    private boolean selectAll;
+    private final Set<String> warned = ConcurrentHashMap.newKeySet();
+    private final Queue<String> warnings = new ConcurrentLinkedQueue<String>();
+
+    // the row layout, computed once per execution
+    private static final int OBJECT_NAME_SOURCE = -1;
+    private static final int KEY_PROPERTY_SOURCE = -2;
+    private static final int NODE_SOURCE = -3;
+    private String[] attributeNames;
+    private Map<String, Integer> attributeOrdinals;
+    private int[] columnSources;
+    private String[] columnKeys;
+    private Class<?>[] columnTypes;
+    private Class<?>[] converterSources;
+    private ValueConverter[] converters;
+    private Object[] attributeValues;
+
     public JmxResultSetExecution(QueryExpression command, ExecutionContext executionContext,
             RuntimeMetadata metadata, JmxConnection connection) {
         this.command = (Select) command;
@@ -69,6 +132,18 @@ public class JmxResultSetExecution implements ResultSetExecution {
 
     @Override
     public void close() {
+        recordQuery();
+        if (this.pendingNames != null) {
+            this.pendingNames.cancel(true);
+        }
+        if (this.fetcher != null) {
+            this.fetcher.close();
+        }
+        if (this.nodeFutures != null) {
+            for (Future<?> future : this.nodeFutures) {
+                future.cancel(true);
+            }
+        }
     }
 
     @Override
@@ -81,97 +156,482 @@ public class JmxResultSetExecution implements ResultSetExecution {
         NamedTable tblRef = (NamedTable) command.getFrom().get(0);
         Table t = tblRef.getMetadataObject();
         String tableName = SQLStringVisitor.getRecordName(t);
+        this.tableName = tableName;
+        this.start = System.nanoTime();
+        this.budget = this.connection.factory.getGovernor().newBudget();
+        final ObjectNameFilter filter = visitor.getFilter();
+        final ObjectName tablePattern;
+        try {
+            tablePattern = new ObjectName(tableName);
+        } catch (MalformedObjectNameException e) {
+            throw new TranslatorException(e);
+        }
+        computeLayout();
+        this.selectAll = isSelectAll(t);
+
+        // each name is read as one row, so the rows only need to be sorted here when ordering by
+        // an attribute or combining the rows of several nodes
+        boolean multiNode = this.connection.factory.isMultiNode();
+        this.sortColumns = visitor.getSortColumns();
+        if (this.sortColumns.length > 0 && (multiNode || !visitor.isOrderedByObjectName())) {
+            this.sorter = new RowSorter(this.sortColumns, visitor.getSortDescending(), visitor.getRowOffset(),
+                    visitor.getRowLimit());
+        } else if (multiNode) {
+            this.skip = visitor.getRowOffset();
+            this.remaining = visitor.getRowLimit();
+        }
+
+        if (!multiNode) {
+            final JmxNode node = this.connection.getNodes().get(0);
+            this.currentNode = node;
+            ExecutorService executor = this.connection.factory.getFetchExecutor();
+            if (executor == null) {
+                // queried by nextBean once the calls are within the calls per second limit
+                this.namePatterns = filter.narrow(tablePattern);
+                return;
+            }
+            // a remote query, so keep the engine thread free while waiting on the names as well
+            this.pendingNames = submit(executor, () -> queryNames(node, filter, filter.narrow(tablePattern), false));
+            return;
+        }
+
+        // query all of the nodes concurrently, so that the cost is about that of the slowest node
+        this.nodes = new ArrayList<JmxNode>();
+        for (JmxNode node : this.connection.getNodes()) {
+            if (visitor.acceptsNode(node.getName())) {
+                this.nodes.add(node);
+            }
+        }
+        ExecutorService executor = this.connection.factory.getNodeExecutor();
+        this.nodeFutures = new ArrayList<Future<List<AttributeFetcher.FetchedBean>>>(this.nodes.size());
+        for (final JmxNode node : this.nodes) {
+            this.nodeFutures.add(submit(executor, () -> {
+                AttributeFetcher nodeFetcher = createFetcher(node,
+                        queryNames(node, filter, filter.narrow(tablePattern), false), null);
+                // a node thread, so it may wait for the calls per second limit
+                nodeFetcher.setGovernor(this.connection.factory.getGovernor(), true);
+                List<AttributeFetcher.FetchedBean> beans = new ArrayList<AttributeFetcher.FetchedBean>();
+                try {
+                    for (AttributeFetcher.FetchedBean bean = nodeFetcher.next(); bean != null; bean = nodeFetcher.next()) {
+                        beans.add(bean);
+                    }
+                } finally {
+                    nodeFetcher.close();
+                }
+                return beans;
+            }));
+        }
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.connection.factory.getNodeTimeout());
+    }
+
+    /**
+     * Run the task on the executor, notifying the engine when it is done
+     */
+    private <T> Future<T> submit(ExecutorService executor, Callable<T> task) {
+        FutureTask<T> future = new FutureTask<T>(task) {
+            @Override
+            protected void done() {
+                executionContext.dataAvailable();
+            }
+        };
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Collect the node results once all have completed or the node timeout has passed, the rows
+     * of the nodes that have not completed are omitted.
+     */
+    private void collectNodeResults() throws TranslatorException {
+        long remaining = this.deadline - System.nanoTime();
+        if (remaining > 0) {
+            for (Future<?> future : this.nodeFutures) {
+                if (!future.isDone()) {
+                    // poll again at the deadline, if not woken by the completion of the nodes
+                    long wait = Math.min(remaining, this.budget.remainingNanos());
+                    throw new DataNotAvailableException(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+                }
+            }
+        }
+        this.nodeResults = new ArrayList<NodeResult>(this.nodes.size());
+        for (int i = 0; i < this.nodes.size(); i++) {
+            JmxNode node = this.nodes.get(i);
+            Future<List<AttributeFetcher.FetchedBean>> future = this.nodeFutures.get(i);
+            if (!future.isDone()) {
+                future.cancel(true);
+                this.executionContext.addWarning(new TranslatorException("Node " + node
+                        + " did not respond within " + this.connection.factory.getNodeTimeout()
+                        + " ms, its rows are omitted"));
+                continue;
+            }
+            try {
+                this.nodeResults.add(new NodeResult(node, future.get()));
+            } catch (CancellationException e) {
+                // closed
+            } catch (ExecutionException e) {
+                this.executionContext.addWarning(new TranslatorException(e.getCause(), "Node " + node
+                        + " failed, its rows are omitted: " + e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TranslatorException(e);
+            }
+        }
+        this.nodeIterator = this.nodeResults.iterator();
+    }
+
+    /**
+     * @param charged true if the tokens for the patterns have already been taken, otherwise they are waited for
+     */
+    private List<ObjectName> queryNames(JmxNode node, ObjectNameFilter filter, List<ObjectName> patterns,
+            boolean charged) throws TranslatorException {
         List<ObjectName> result = new ArrayList<ObjectName>();
         try {
-            for (ObjectInstance oi : this.connection.mbsc.queryMBeans(new ObjectName(tableName), null)) {
-                result.add(oi.getObjectName());
+            // a QueryExp is only passed in process, a remote server would need the filter class
+            QueryExp query = null;
+            if (!filter.isEmpty() && node.isLocal()) {
+                query = filter;
+            }
+            for (ObjectName pattern : patterns) {
+                if (!charged) {
+                    this.connection.factory.getGovernor().acquire();
+                }
+                Set<ObjectName> names;
+                long start = System.nanoTime();
+                if (query == null && node.getCoalescer() != null) {
+                    names = node.getCoalescer().queryNames(node.getConnection(), pattern);
+                } else {
+                    names = node.getConnection().queryNames(pattern, query);
+                }
+                this.connection.factory.getMetrics().getQueryMBeansHistogram().recordSince(start);
+                for (ObjectName name : names) {
+                    if (query == null && !filter.apply(name)) {
+                        continue;
+                    }
+                    result.add(name);
+                }
             }
-        } catch (IOException | MalformedObjectNameException e) {
+        } catch (IOException e) {
             throw new TranslatorException(e);
         }
+        return trimNames(result);
+    }
+
+    /**
+     * Sort the names when ordering by "$ObjectName" and drop those past the limit, so that the
+     * attributes of those beans are never fetched.  On a single node the names skipped by the offset
+     * are dropped as well, otherwise the offset applies to the combined rows of the nodes.
+     */
+    private List<ObjectName> trimNames(List<ObjectName> names) {
+        boolean orderedByName = visitor.isOrderedByObjectName();
+        if (orderedByName) {
+            // the column holds the canonical name
+            Comparator<ObjectName> comparator = Comparator.comparing(ObjectName::getCanonicalName);
+            names.sort(visitor.getSortDescending()[0] ? comparator.reversed() : comparator);
+        } else if (this.sortColumns.length > 0) {
+            // the rows past the limit are only known once the attributes are read
+            return names;
+        }
+        int limit = visitor.getRowLimit();
+        if (limit < 0) {
+            return names;
+        }
+        int offset = visitor.getRowOffset();
+        int from = this.connection.factory.isMultiNode() ? 0 : Math.min(offset, names.size());
+        int to = (int)Math.min((long)offset + limit, names.size());
+        return names.subList(from, to);
+    }
+
+    private AttributeFetcher createFetcher(JmxNode node, List<ObjectName> names) {
+        return createFetcher(node, names, this.executionContext::dataAvailable);
+    }
 
-        this.resultRows = result.listIterator();
+    private AttributeFetcher createFetcher(JmxNode node, List<ObjectName> names, Runnable fetchedListener) {
+        AttributeFetcher result = new AttributeFetcher(node.getConnection(), names.iterator(), this.attributeNames,
+                this.connection.factory.getFetchExecutor(), this.connection.factory.getFetchWindow(),
+                fetchedListener);
+        result.setCoalescer(node.getCoalescer());
+        result.setGovernor(this.connection.factory.getGovernor(), false);
+        result.setLatencyHistogram(this.connection.factory.getMetrics().getGetAttributesHistogram());
+        long attributeTimeout = this.connection.factory.getAttributeTimeout();
+        if (attributeTimeout > 0) {
+            final String prefix = this.connection.factory.isMultiNode() ? "Node " + node + ": " : "";
+            result.setAttributeTimeout(attributeTimeout, this.connection.factory.getAttributeExecutor(),
+                    this.connection.factory.getSlowAttributes(), node.getName(), this.tableName, this.selectAll,
+                    message -> {
+                        if (this.warned.add(prefix + message)) {
+                            this.warnings.add(prefix + message);
+                        }
+                    });
+        }
+        return result;
+    }
+
+    /**
+     * Teiid expands SELECT * before it is pushed down, so it is taken to be any query projecting every
+     * attribute of the table.
+     * @return true if the query looks like a SELECT *, where the slow attributes are not read
+     */
+    private boolean isSelectAll(Table t) {
+        if (this.attributeNames.length < 2 || t == null) {
+            return false;
+        }
+        int attributes = 0;
+        for (Column column : t.getColumns()) {
+            if (!column.getName().startsWith("$")) {
+                attributes++;
+            }
+        }
+        return attributes == this.attributeNames.length;
+    }
+
+    private void addWarnings() {
+        for (String message = this.warnings.poll(); message != null; message = this.warnings.poll()) {
+            this.executionContext.addWarning(new TranslatorException(message));
+        }
+    }
+
+    /**
+     * @return the next bean, or null if there are no more
+     * @throws DataNotAvailableException if the next bean is still being fetched, the engine is
+     * notified when it is available
+     */
+    private AttributeFetcher.FetchedBean nextBean() throws TranslatorException {
+        if (this.namePatterns != null) {
+            // on the engine thread, so the tokens are taken without waiting
+            for (; this.chargedPatterns < this.namePatterns.size(); this.chargedPatterns++) {
+                throttle(this.connection.factory.getGovernor().tryAcquire());
+            }
+            List<ObjectName> names = queryNames(this.currentNode, visitor.getFilter(), this.namePatterns, true);
+            this.namePatterns = null;
+            this.budget.checkBeanCount(names.size());
+            this.fetcher = createFetcher(this.currentNode, names);
+        }
+        if (this.pendingNames != null) {
+            if (!this.pendingNames.isDone()) {
+                throw notAvailable();
+            }
+            try {
+                List<ObjectName> names = this.pendingNames.get();
+                this.budget.checkBeanCount(names.size());
+                this.fetcher = createFetcher(this.currentNode, names);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof TranslatorException) {
+                    throw (TranslatorException)e.getCause();
+                }
+                throw new TranslatorException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TranslatorException(e);
+            }
+            this.pendingNames = null;
+        }
+        if (this.fetcher != null) {
+            if (!this.fetcher.isReady()) {
+                throw notAvailable();
+            }
+            return this.fetcher.next();
+        }
+        if (this.nodeIterator == null) {
+            collectNodeResults();
+        }
+        while (this.beanIterator == null || !this.beanIterator.hasNext()) {
+            if (!this.nodeIterator.hasNext()) {
+                return null;
+            }
+            NodeResult result = this.nodeIterator.next();
+            this.currentNode = result.node;
+            this.beanIterator = result.beans.iterator();
+        }
+        return this.beanIterator.next();
+    }
+
+    /**
+     * @param wait the nanoseconds to wait for a token, 0 if one was taken
+     */
+    private static void throttle(long wait) throws DataNotAvailableException {
+        if (wait > 0) {
+            // over the calls per second limit
+            throw new DataNotAvailableException(Math.max(1, TimeUnit.NANOSECONDS.toMillis(wait)));
+        }
+    }
+
+    /**
+     * @return the exception to wait for the work in flight, which notifies the engine when done,
+     * or for the query timeout
+     */
+    private DataNotAvailableException notAvailable() {
+        long remaining = this.budget.remainingNanos();
+        if (remaining == Long.MAX_VALUE) {
+            return DataNotAvailableException.NO_POLLING;
+        }
+        return new DataNotAvailableException(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+    }
+
+    private void recordQuery() {
+        if (this.recorded || this.tableName == null) {
+            return;
+        }
+        this.recorded = true;
+        this.connection.factory.getMetrics().recordQuery(this.tableName, this.rowCount, System.nanoTime() - this.start);
+    }
+
+    /**
+     * Resolve each projected column to its source - the ObjectName, a key property, or the
+     * ordinal of the fetched attribute - along with the expected type.
+     */
+    void computeLayout() {
+        this.attributeNames = visitor.getAttributeNames();
+        this.attributeOrdinals = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        for (int i = 0; i < this.attributeNames.length; i++) {
+            this.attributeOrdinals.put(this.attributeNames[i], i);
+        }
+        this.attributeValues = new Object[this.attributeNames.length];
+
+        String[] columnNames = visitor.getColumnNames();
+        this.columnSources = new int[columnNames.length];
+        this.columnKeys = new String[columnNames.length];
+        this.columnTypes = new Class<?>[columnNames.length];
+        this.converterSources = new Class<?>[columnNames.length];
+        this.converters = new ValueConverter[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            String colName = columnNames[i];
+            this.columnTypes[i] = visitor.getColumnTypes().get(colName);
+            String key = visitor.getKeyProperties().get(colName);
+            if (key != null) {
+                this.columnSources[i] = KEY_PROPERTY_SOURCE;
+                this.columnKeys[i] = key;
+            } else if (colName.equals(JmxTranslator.OBJECT_NAME_COLUMN)) {
+                this.columnSources[i] = OBJECT_NAME_SOURCE;
+            } else if (colName.equals(JmxTranslator.NODE_COLUMN)) {
+                this.columnSources[i] = NODE_SOURCE;
+            } else {
+                this.columnSources[i] = this.attributeOrdinals.get(colName);
+            }
+        }
     }
 
     @Override
     public List<?> next() throws TranslatorException, DataNotAvailableException {
-        if (!this.resultRows.hasNext()) {
-            return null;
+        try {
+            this.budget.checkTimeout();
+            this.budget.startAllocation();
+            List<?> row = readRow();
+            this.budget.endAllocation();
+            return row;
+        } catch (DataNotAvailableException e) {
+            // the work in flight continues while the engine waits
+            throw e;
+        } catch (TranslatorException e) {
+            // stop any work in flight
+            close();
+            throw e;
         }
-        List<Object> row = new ArrayList<Object>();
-        ObjectName objectName = this.resultRows.next();
+    }
 
-        List<Attribute> attributes = null;
+    private List<?> readRow() throws TranslatorException {
+        List<?> row;
         try {
-            attributes = this.connection.mbsc.getAttributes(objectName, visitor.getColumnNames()).asList();
-        } catch (IOException | InstanceNotFoundException | ReflectionException e) {
-            throw new TranslatorException(e);
+            row = nextRow();
+        } finally {
+            addWarnings();
         }
-        attributes.add(new Attribute(JmxTranslator.OBJECT_NAME_COLUMN, objectName));
+        if (row == null) {
+            recordQuery();
+            return null;
+        }
+        this.rowCount++;
+        return row;
+    }
 
-        for (String colName : this.visitor.getColumnNames()) {
-            Object value = null;
-            for (Attribute a : attributes) {
-                if (a.getName().equalsIgnoreCase(colName)) {
-                    value = a.getValue();
+    /**
+     * @return the next row after the ordering, offset and limit, or null if there are no more
+     */
+    private List<?> nextRow() throws TranslatorException {
+        if (this.sorter != null) {
+            if (this.sortedRows == null) {
+                // resumed from the last row added when waiting on the fetches
+                for (List<?> row = convertRow(); row != null; row = convertRow()) {
+                    this.sorter.add(row);
+                    this.budget.checkTimeout();
                 }
+                this.sortedRows = this.sorter.getRows().iterator();
             }
-            if( value == null ) {
-                row.add(null);
-            } else {
-                Class<?> expectedClass = visitor.getColumnTypes().get(colName);
-                row.add(retrieveValue(value, expectedClass));
+            return this.sortedRows.hasNext() ? this.sortedRows.next() : null;
+        }
+        for (; this.skip > 0; this.skip--) {
+            if (convertRow() == null) {
+                return null;
             }
         }
-
+        if (this.remaining == 0) {
+            return null;
+        }
+        List<?> row = convertRow();
+        if (row != null && this.remaining > 0) {
+            this.remaining--;
+        }
         return row;
     }
 
-    public Object retrieveValue(Object value, Class<?> expectedClass) throws TranslatorException {
-        if (value == null) {
+    /**
+     * @return the row for the next bean, or null if there are no more
+     */
+    private List<?> convertRow() throws TranslatorException {
+        AttributeFetcher.FetchedBean bean = nextBean();
+        if (bean == null) {
             return null;
         }
+        ObjectName objectName = bean.getName();
 
-        if (value.getClass().equals(expectedClass)) {
-            return value;
-        }
-
-        if (value instanceof java.util.Date && expectedClass.equals(java.sql.Date.class)) {
-            return new java.sql.Date(((java.util.Date) value).getTime());
-        } else if (value instanceof java.util.Date && expectedClass.equals(java.sql.Timestamp.class)) {
-            return new java.sql.Timestamp(((java.util.Date) value).getTime());
-        } else if (value instanceof java.util.Date && expectedClass.equals(java.sql.Time.class)) {
-            return new java.sql.Time(((java.util.Date) value).getTime());
-        } else if (value instanceof String && expectedClass.equals(Character.class)) {
-            return Character.valueOf(((String)value).charAt(0));
-        } else if (value instanceof ObjectName && expectedClass.equals(String.class)) {
-            return ((ObjectName)value).getCanonicalName();
-        } else if (value.getClass().isArray()) {
-            if (value.getClass().getComponentType().equals(CompositeData.class)
-                    || value.getClass().getComponentType().equals(TabularData.class)) {
-                value = JmxJsonUtil.converToJson(value);
+        // the attributes are normally returned in the requested order, but unreadable ones are omitted
+        Object[] values = this.attributeValues;
+        Arrays.fill(values, null);
+        int expected = 0;
+        for (Object o : bean.getAttributes()) {
+            Attribute a = (Attribute)o;
+            int ordinal;
+            if (expected < this.attributeNames.length && this.attributeNames[expected].equals(a.getName())) {
+                ordinal = expected;
             } else {
-                Object array = Array.newInstance(expectedClass.getComponentType(), Array.getLength(value));
-                for (int i = 0; i < Array.getLength(value); i++) {
-                    Array.set(array, i, retrieveValue(Array.get(value, i), expectedClass.getComponentType()));
+                Integer index = this.attributeOrdinals.get(a.getName());
+                if (index == null) {
+                    continue;
                 }
-                return array;
+                ordinal = index;
             }
-        } else if (value instanceof CompositeData && expectedClass.equals(JsonType.class)) {
-            value = JmxJsonUtil.converToJson(value);
-        } else if (value instanceof TabularData && expectedClass.equals(JsonType.class)) {
-            value = JmxJsonUtil.converToJson(value);
+            values[ordinal] = a.getValue();
+            expected = ordinal + 1;
+        }
+        this.budget.addBean(values);
 
-        } else {
-            Transform transform = DataTypeManager.getTransform(value.getClass(), expectedClass);
-            if (transform != null) {
-                try {
-                    value = transform.transform(value, expectedClass);
-                } catch (TransformationException e) {
-                    throw new TranslatorException(e);
+        Object[] row = new Object[this.columnSources.length];
+        for (int i = 0; i < row.length; i++) {
+            int source = this.columnSources[i];
+            Object value;
+            if (source >= 0) {
+                value = values[source];
+            } else if (source == OBJECT_NAME_SOURCE) {
+                value = objectName;
+            } else if (source == NODE_SOURCE) {
+                value = this.currentNode.getName();
+            } else {
+                value = objectName.getKeyProperty(this.columnKeys[i]);
+            }
+            if (value != null) {
+                // the attribute class is almost always the same from bean to bean
+                ValueConverter converter = this.converters[i];
+                if (value.getClass() != this.converterSources[i]) {
+                    converter = ValueConverters.getConverter(value.getClass(), this.columnTypes[i]);
+                    this.converterSources[i] = value.getClass();
+                    this.converters[i] = converter;
                 }
+                row[i] = converter.convert(value);
             }
         }
-        return value;
+        return Arrays.asList(row);
+    }
+
+    public Object retrieveValue(Object value, Class<?> expectedClass) throws TranslatorException {
+        return ValueConverters.convert(value, expectedClass);
     }
 }
@@ -20,28 +20,167 @@ package org.teiid.manageql.server.jmx;
 import static org.teiid.language.visitor.SQLStringVisitor.getRecordName;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.teiid.language.ColumnReference;
+import org.teiid.language.Comparison;
 import org.teiid.language.DerivedColumn;
 import org.teiid.language.Expression;
+import org.teiid.language.In;
 import org.teiid.language.LanguageObject;
+import org.teiid.language.Like;
+import org.teiid.language.Limit;
+import org.teiid.language.Literal;
+import org.teiid.language.SortSpecification;
 import org.teiid.language.visitor.HierarchyVisitor;
 import org.teiid.metadata.AbstractMetadataRecord;
+import org.teiid.translator.TranslatorException;
 
 public class JmxSelectVistor extends HierarchyVisitor {
 
     private List<String> columnNames = new ArrayList<String>();
+    private List<String> columnAliases = new ArrayList<String>();
     private Map<String, Class<?>> columnTypes = new HashMap<String, Class<?>>();
+    private Map<String, String> keyProperties = new HashMap<String, String>();
+    private List<ColumnPredicate> predicates = new ArrayList<ColumnPredicate>();
+    private TranslatorException exception;
+    private String[] columnNameArray;
+    private List<Integer> sortColumns = new ArrayList<Integer>();
+    private List<Boolean> sortDescending = new ArrayList<Boolean>();
+    private int rowLimit = -1;
+    private int rowOffset;
 
     public Map<String, Class<?>> getColumnTypes() {
         return columnTypes;
     }
 
+    /**
+     * @return the projected column names, the array is shared and should not be modified
+     */
     public String[] getColumnNames() {
-        return columnNames.toArray(new String[columnNames.size()]);
+        if (columnNameArray == null || columnNameArray.length != columnNames.size()) {
+            columnNameArray = columnNames.toArray(new String[columnNames.size()]);
+        }
+        return columnNameArray;
+    }
+
+    /**
+     * @return the projected column names that are MBean attributes, rather than the
+     * "$ObjectName", "$Node" or key property columns
+     */
+    public String[] getAttributeNames() {
+        List<String> names = new ArrayList<String>();
+        for (String name : columnNames) {
+            if (!name.equals(JmxTranslator.OBJECT_NAME_COLUMN) && !name.equals(JmxTranslator.NODE_COLUMN)
+                    && !keyProperties.containsKey(name)
+                    && !containsIgnoreCase(names, name)) {
+                names.add(name);
+            }
+        }
+        return names.toArray(new String[names.size()]);
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        for (String existing : names) {
+            if (existing.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the key property name for the projected key property columns
+     */
+    public Map<String, String> getKeyProperties() {
+        return keyProperties;
+    }
+
+    public List<ColumnPredicate> getPredicates() throws TranslatorException {
+        if (exception != null) {
+            throw exception;
+        }
+        return predicates;
+    }
+
+    /**
+     * @return the filter for the predicates against the "$ObjectName" and key property columns
+     */
+    public ObjectNameFilter getFilter() throws TranslatorException {
+        List<ColumnPredicate> result = new ArrayList<ColumnPredicate>();
+        for (ColumnPredicate predicate : getPredicates()) {
+            if (predicate.getColumn().equals(JmxTranslator.NODE_COLUMN)) {
+                continue;
+            }
+            if (predicate.getKeyProperty() != null || predicate.getColumn().equals(JmxTranslator.OBJECT_NAME_COLUMN)) {
+                result.add(predicate);
+            } else {
+                throw new TranslatorException("Unsupported predicate " + predicate);
+            }
+        }
+        return new ObjectNameFilter(result);
+    }
+
+    /**
+     * @return true if the predicates against the "$Node" column accept the node
+     */
+    public boolean acceptsNode(String nodeName) throws TranslatorException {
+        for (ColumnPredicate predicate : getPredicates()) {
+            if (predicate.getColumn().equals(JmxTranslator.NODE_COLUMN) && !predicate.matches(nodeName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the indexes of the projected columns to order by, most significant first
+     */
+    public int[] getSortColumns() throws TranslatorException {
+        if (exception != null) {
+            throw exception;
+        }
+        int[] result = new int[sortColumns.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sortColumns.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return for each of the sort columns, true if it is ordered descending
+     */
+    public boolean[] getSortDescending() {
+        boolean[] result = new boolean[sortDescending.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = sortDescending.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @return true if the rows are ordered by the "$ObjectName" column before any other
+     */
+    public boolean isOrderedByObjectName() {
+        return !sortColumns.isEmpty()
+                && columnNames.get(sortColumns.get(0)).equals(JmxTranslator.OBJECT_NAME_COLUMN);
+    }
+
+    /**
+     * @return the maximum number of rows to return, or -1 if there is no limit
+     */
+    public int getRowLimit() {
+        return rowLimit;
+    }
+
+    /**
+     * @return the number of rows to skip before those returned
+     */
+    public int getRowOffset() {
+        return rowOffset;
     }
 
     /**
@@ -93,6 +232,14 @@ public class JmxSelectVistor extends HierarchyVisitor {
         return elemShortName;
     }
 
+    static String getKeyProperty(ColumnReference obj) {
+        AbstractMetadataRecord elementID = obj.getMetadataObject();
+        if (elementID == null) {
+            return null;
+        }
+        return elementID.getProperty(JmxTranslator.KEY_PROPERTY, false);
+    }
+
     @Override
     public void visit(DerivedColumn obj) {
         Expression teiidExpression = obj.getExpression();
@@ -100,7 +247,79 @@ public class JmxSelectVistor extends HierarchyVisitor {
             ColumnReference cr = (ColumnReference)teiidExpression;
             String name = getColumnName(cr);
             columnNames.add(name);
+            columnAliases.add(obj.getAlias());
             columnTypes.put(name, cr.getType());
+            String key = getKeyProperty(cr);
+            if (key != null) {
+                keyProperties.put(name, key);
+            }
+        }
+    }
+
+    @Override
+    public void visit(SortSpecification obj) {
+        // the sort keys are projected columns, referenced by their alias if they have one
+        int index = -1;
+        if (obj.getExpression() instanceof ColumnReference) {
+            ColumnReference cr = (ColumnReference)obj.getExpression();
+            if (cr.getMetadataObject() == null) {
+                index = columnAliases.indexOf(cr.getName());
+            }
+            if (index < 0) {
+                index = columnNames.indexOf(getColumnName(cr));
+            }
+        }
+        if (index < 0) {
+            this.exception = new TranslatorException("Unsupported sort key " + obj.getExpression());
+            return;
+        }
+        sortColumns.add(index);
+        sortDescending.add(obj.getOrdering() == SortSpecification.Ordering.DESC);
+    }
+
+    @Override
+    public void visit(Limit obj) {
+        rowLimit = obj.getRowLimit();
+        rowOffset = obj.getRowOffset();
+    }
+
+    @Override
+    public void visit(Comparison obj) {
+        ColumnPredicate.Operator op = ColumnPredicate.Operator.valueOf(obj.getOperator().name());
+        addPredicate(obj.getLeftExpression(), op, Collections.singletonList(obj.getRightExpression()), false, null);
+    }
+
+    @Override
+    public void visit(Like obj) {
+        if (obj.getMode() != Like.MatchMode.LIKE) {
+            this.exception = new TranslatorException("Unsupported match mode " + obj.getMode());
+            return;
+        }
+        addPredicate(obj.getLeftExpression(), ColumnPredicate.Operator.LIKE,
+                Collections.singletonList(obj.getRightExpression()), obj.isNegated(), obj.getEscapeCharacter());
+    }
+
+    @Override
+    public void visit(In obj) {
+        addPredicate(obj.getLeftExpression(), ColumnPredicate.Operator.IN, obj.getRightExpressions(),
+                obj.isNegated(), null);
+    }
+
+    private void addPredicate(Expression left, ColumnPredicate.Operator op, List<Expression> right,
+            boolean negated, Character escape) {
+        if (!(left instanceof ColumnReference)) {
+            this.exception = new TranslatorException("Unsupported predicate expression " + left);
+            return;
+        }
+        List<Object> values = new ArrayList<Object>(right.size());
+        for (Expression expr : right) {
+            if (!(expr instanceof Literal)) {
+                this.exception = new TranslatorException("Unsupported predicate value " + expr);
+                return;
+            }
+            values.add(((Literal)expr).getValue());
         }
+        ColumnReference cr = (ColumnReference)left;
+        this.predicates.add(new ColumnPredicate(getColumnName(cr), getKeyProperty(cr), op, values, negated, escape));
     }
 }
@@ -18,27 +18,47 @@
 package org.teiid.manageql.server.jmx;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.InstanceNotFoundException;
 import javax.management.IntrospectionException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
-import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 import javax.management.ReflectionException;
 import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.TabularData;
 
 import org.teiid.language.Call;
+import org.teiid.language.NamedTable;
 import org.teiid.language.QueryExpression;
+import org.teiid.language.Select;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
 import org.teiid.metadata.BaseColumn.NullType;
 import org.teiid.metadata.Column;
 import org.teiid.metadata.Column.SearchType;
+import org.teiid.metadata.FunctionMethod;
 import org.teiid.metadata.MetadataFactory;
 import org.teiid.metadata.Procedure;
 import org.teiid.metadata.ProcedureParameter;
 import org.teiid.metadata.RuntimeMetadata;
+import org.teiid.metadata.Schema;
+import org.teiid.metadata.Server;
 import org.teiid.metadata.Table;
 import org.teiid.query.sql.visitor.SQLStringVisitor;
 import org.teiid.translator.ExecutionContext;
@@ -46,17 +66,63 @@ import org.teiid.translator.ExecutionFactory;
 import org.teiid.translator.ProcedureExecution;
 import org.teiid.translator.ResultSetExecution;
 import org.teiid.translator.TranslatorException;
+import org.teiid.translator.TranslatorProperty;
 import org.teiid.translator.TypeFacility;
 
 public class JmxTranslator extends ExecutionFactory<JmxConnectionFactory, JmxConnection> {
 
     protected static final String GET_DYNAMIC_TABLE_DDL = "get_dynamic_table_ddl";
     protected static final String OBJECT_NAME_COLUMN = "$ObjectName";
+    /**
+     * Column holding the node name, only present when querying more than one node
+     */
+    protected static final String NODE_COLUMN = "$Node";
+    /**
+     * Column property that holds the ObjectName key property backing a key property column
+     */
+    protected static final String KEY_PROPERTY = "KEY_PROPERTY";
+    /**
+     * The key property that groups the MBeans of a domain into one table
+     */
+    protected static final String TYPE_KEY = "type";
+    /**
+     * The estimated number of live threads, so that the planner reads the frames of only the threads
+     * that match the predicates of a join against the threads table
+     */
+    private static final int THREADS_CARDINALITY = 200;
+    private static final int FRAMES_PER_THREAD = 30;
+
+    private static final ConcurrentHashMap<String, String> RUNTIME_TYPES = new ConcurrentHashMap<String, String>();
+
+    private boolean lazyMetadata;
+    private boolean groupedTables;
+    // distinguishes the records of each schema update
+    private final AtomicLong updates = new AtomicLong();
 
     public JmxTranslator() {
         setTransactionSupport(TransactionSupport.NONE);
     }
 
+    @TranslatorProperty(display="Lazy Metadata", description="Only define the dynamic table procedure at deployment, "
+            + "tables are then created for each MBean or pattern as they are first referenced", advanced=true)
+    public boolean isLazyMetadata() {
+        return lazyMetadata;
+    }
+
+    public void setLazyMetadata(boolean lazyMetadata) {
+        this.lazyMetadata = lazyMetadata;
+    }
+
+    @TranslatorProperty(display="Grouped Tables", description="Define a table for each MBean domain and type, "
+            + "named by the pattern matching them, rather than a table for each MBean", advanced=true)
+    public boolean isGroupedTables() {
+        return groupedTables;
+    }
+
+    public void setGroupedTables(boolean groupedTables) {
+        this.groupedTables = groupedTables;
+    }
+
     @Override
     public boolean isSourceRequired() {
         return true;
@@ -74,12 +140,83 @@ public class JmxTranslator extends ExecutionFactory<JmxConnectionFactory, JmxCon
 
     @Override
     public boolean isThreadBound() {
+        // remote work is waited on asynchronously, see JmxResultSetExecution
+        return false;
+    }
+
+    @Override
+    public boolean supportsCompareCriteriaEquals() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsCompareCriteriaOrdered() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsLikeCriteria() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsInCriteria() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsOnlyLiteralComparison() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsOrderBy() {
+        return true;
+    }
+
+    @Override
+    public NullOrder getDefaultNullOrder() {
+        // see RowSorter
+        return NullOrder.LOW;
+    }
+
+    @Override
+    public boolean supportsRowLimit() {
+        return true;
+    }
+
+    @Override
+    public boolean supportsRowOffset() {
         return true;
     }
 
     @Override
     public ResultSetExecution createResultSetExecution(QueryExpression command, ExecutionContext executionContext,
             RuntimeMetadata metadata, JmxConnection connection) throws TranslatorException {
+        NamedTable table = (NamedTable)((Select)command).getFrom().get(0);
+        if (table.getMetadataObject() != null
+                && table.getMetadataObject().getName().equals(HistorySampler.HISTORY_TABLE)) {
+            return new HistoryExecution(command, connection.factory.getHistorySampler());
+        }
+        if (table.getMetadataObject() != null
+                && table.getMetadataObject().getName().equals(NotificationCollector.NOTIFICATIONS_TABLE)) {
+            return new NotificationExecution(command, connection.factory.getNotificationCollector());
+        }
+        if (table.getMetadataObject() != null
+                && table.getMetadataObject().getName().equals(PlatformTables.METRICS_TABLE)) {
+            return new PlatformExecution(command, PlatformTables.getMetricsTable(connection.factory.getMetrics()));
+        }
+        if (table.getMetadataObject() != null && PlatformTables.isSupported(connection.factory)) {
+            PlatformTables.PlatformTable<?> platformTable = PlatformTables.getTable(table.getMetadataObject().getName());
+            if (platformTable != null) {
+                return new PlatformExecution(command, platformTable);
+            }
+            String name = table.getMetadataObject().getName();
+            if (name.equals(ThreadsExecution.THREADS_TABLE) || name.equals(ThreadsExecution.FRAMES_TABLE)) {
+                return new ThreadsExecution(command, ManagementFactory.getThreadMXBean(),
+                        name.equals(ThreadsExecution.FRAMES_TABLE), connection.factory.getThreadMaxDepth());
+            }
+        }
         return new JmxResultSetExecution(command, executionContext, metadata, connection);
     }
 
@@ -95,15 +232,249 @@ public class JmxTranslator extends ExecutionFactory<JmxConnectionFactory, JmxCon
     @Override
     public void getMetadata(MetadataFactory mf, JmxConnection conn) throws TranslatorException {
         defineMetadataForDynamicTable(mf);
-        MBeanServerConnection mbsc = conn.mbsc;
+        if (conn.factory.getHistorySampler() != null) {
+            defineHistoryTable(mf);
+        }
+        if (conn.factory.getNotificationCollector() != null) {
+            defineNotificationsTable(mf);
+        }
+        definePlatformTable(mf, PlatformTables.getMetricsTable(conn.factory.getMetrics()));
+        if (PlatformTables.isSupported(conn.factory)) {
+            for (PlatformTables.PlatformTable<?> platformTable : PlatformTables.getTables()) {
+                definePlatformTable(mf, platformTable);
+            }
+            defineThreadTables(mf);
+        }
+        if (lazyMetadata) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean multiNode = conn.factory.isMultiNode();
         try {
-            for (ObjectName objectName : new TreeSet<ObjectName>(mbsc.queryNames(null, null))) {
-                MBeanInfo info = mbsc.getMBeanInfo(objectName);
-                addOrUpdateTable(mf, info, objectName.toString());
+            for (JmxNode node : conn.getNodes()) {
+                if (groupedTables) {
+                    defineGroupedTables(mf, node, null, multiNode);
+                    continue;
+                }
+                for (ObjectName objectName : new TreeSet<ObjectName>(node.getConnection().queryNames(null, null))) {
+                    MBeanInfo info = node.getMBeanInfo(objectName);
+                    Table table = addOrUpdateTable(mf, info, objectName.toString());
+                    if (multiNode) {
+                        addOrUpdateCol(mf, table, NODE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING, SearchType.Searchable);
+                    }
+                }
             }
         } catch (InstanceNotFoundException | IntrospectionException | ReflectionException | IOException e) {
             throw new TranslatorException(e);
         }
+        LogManager.logInfo(LogConstants.CTX_CONNECTOR, "Loaded " + mf.getSchema().getTables().size()
+                + " JMX tables in " + (System.nanoTime() - start)/1000000 + " ms");
+    }
+
+    /**
+     * Define a table for each domain and "type" key, named by the pattern matching those MBeans, such
+     * as <code>java.lang:type=MemoryPool,*</code>.  It has the attributes of every MBean class of the
+     * group and a column for each key property.  The MBeanInfo is only read for one MBean of each
+     * class, so the cost is that of the number of MBean types rather than of MBeans.  MBeans without
+     * a "type" key have a table of their own.
+     */
+    private void defineGroupedTables(MetadataFactory mf, JmxNode node, ObjectName pattern, boolean multiNode)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        // the table name to an MBean of each class in the group
+        TreeMap<String, Map<String, ObjectName>> groups = new TreeMap<String, Map<String, ObjectName>>();
+        TreeMap<String, TreeSet<String>> keys = new TreeMap<String, TreeSet<String>>();
+        for (ObjectInstance oi : node.getConnection().queryMBeans(pattern, null)) {
+            ObjectName objectName = oi.getObjectName();
+            String type = objectName.getKeyProperty(TYPE_KEY);
+            String tableName = getTableName(objectName);
+            Map<String, ObjectName> classes = groups.get(tableName);
+            if (classes == null) {
+                classes = new HashMap<String, ObjectName>();
+                groups.put(tableName, classes);
+                keys.put(tableName, new TreeSet<String>());
+            }
+            if (!classes.containsKey(oi.getClassName())) {
+                classes.put(oi.getClassName(), objectName);
+            }
+            if (type != null) {
+                keys.get(tableName).addAll(objectName.getKeyPropertyList().keySet());
+            }
+        }
+        for (Map.Entry<String, Map<String, ObjectName>> group : groups.entrySet()) {
+            Table table = null;
+            for (ObjectName objectName : new TreeSet<ObjectName>(group.getValue().values())) {
+                MBeanInfo info;
+                try {
+                    info = node.getMBeanInfo(objectName);
+                } catch (InstanceNotFoundException e) {
+                    // unregistered since the query
+                    continue;
+                }
+                table = addOrUpdateTable(mf, info, group.getKey());
+            }
+            if (table == null) {
+                continue;
+            }
+            for (String key : keys.get(group.getKey())) {
+                String column = getKeyColumnName(key);
+                if (column.equalsIgnoreCase(OBJECT_NAME_COLUMN) || column.equalsIgnoreCase(NODE_COLUMN)
+                        || table.getColumnByName(column) != null) {
+                    continue;
+                }
+                Column c = mf.addColumn(column, TypeFacility.RUNTIME_NAMES.STRING, table);
+                c.setSearchType(SearchType.Searchable);
+                c.setProperty(KEY_PROPERTY, key);
+            }
+            if (multiNode) {
+                addOrUpdateCol(mf, table, NODE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING, SearchType.Searchable);
+            }
+        }
+    }
+
+    /**
+     * @return the name of the table holding the MBean, which is the pattern of its group with
+     * grouped tables
+     */
+    String getTableName(ObjectName objectName) {
+        String type = objectName.getKeyProperty(TYPE_KEY);
+        if (!groupedTables || type == null) {
+            return objectName.toString();
+        }
+        return objectName.getDomain() + ":" + TYPE_KEY + "=" + type + ",*";
+    }
+
+    /**
+     * Rebuild tables of the deployed schema from the MBeans that are currently registered, a table
+     * that no longer has any MBean is removed.  Tables are replaced rather than modified, and only
+     * if their columns have changed.  The replaced and removed tables are marked as modified so
+     * that the cached plans using them are invalidated.
+     * <p>
+     * Readers of the deployed schema are not synchronized, so it is left untouched and the changes
+     * are made to a copy that is to be published in its place.
+     *
+     * @param mf the factory to build the tables with, its schema is only used as scratch space
+     * @return the copy of the schema with the tables added, replaced or removed, or null if none
+     * of the tables changed
+     */
+    Schema updateTables(MetadataFactory mf, Schema schema, List<JmxNode> nodes, boolean multiNode,
+            Collection<String> tableNames) throws TranslatorException {
+        try {
+            for (JmxNode node : nodes) {
+                for (String tableName : tableNames) {
+                    ObjectName objectName;
+                    try {
+                        objectName = new ObjectName(tableName);
+                    } catch (MalformedObjectNameException e) {
+                        continue;
+                    }
+                    if (groupedTables) {
+                        defineGroupedTables(mf, node, objectName, multiNode);
+                        continue;
+                    }
+                    MBeanInfo info;
+                    try {
+                        info = node.getMBeanInfo(objectName);
+                    } catch (InstanceNotFoundException e) {
+                        continue;
+                    }
+                    Table table = addOrUpdateTable(mf, info, tableName);
+                    if (multiNode) {
+                        addOrUpdateCol(mf, table, NODE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING, SearchType.Searchable);
+                    }
+                }
+            }
+        } catch (InstanceNotFoundException | IntrospectionException | ReflectionException | IOException e) {
+            // leave nothing behind for the retry
+            for (String tableName : tableNames) {
+                mf.getSchema().removeTable(tableName);
+            }
+            throw new TranslatorException(e);
+        }
+
+        String suffix = "-" + updates.incrementAndGet();
+        long modified = System.currentTimeMillis();
+        Map<String, Table> added = new LinkedHashMap<String, Table>();
+        Set<String> removed = new HashSet<String>();
+        for (String tableName : tableNames) {
+            Table table = mf.getSchema().getTable(tableName);
+            Table existing = schema.getTable(tableName);
+            if (table != null) {
+                mf.getSchema().removeTable(table.getName());
+                if (existing != null && sameColumns(existing, table)) {
+                    continue;
+                }
+            }
+            if (existing != null) {
+                removed.add(existing.getName());
+            }
+            if (table != null) {
+                // the uuids are otherwise only unique within a factory
+                table.setUUID(table.getUUID() + suffix);
+                for (Column column : table.getColumns()) {
+                    column.setUUID(column.getUUID() + suffix);
+                }
+                added.put(table.getName(), table);
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return null;
+        }
+        Schema copy = copySchema(schema, removed);
+        for (Table table : added.values()) {
+            copy.addTable(table);
+        }
+        for (String tableName : removed) {
+            schema.getTable(tableName).setLastModified(modified);
+        }
+        return copy;
+    }
+
+    /**
+     * @return a schema with the same name, properties and records as the given schema, less the
+     * named tables
+     */
+    private static Schema copySchema(Schema schema, Set<String> excludedTables) {
+        Schema copy = new Schema();
+        copy.setName(schema.getName());
+        copy.setUUID(schema.getUUID());
+        copy.setNameInSource(schema.getNameInSource());
+        copy.setAnnotation(schema.getAnnotation());
+        copy.setProperties(schema.getProperties());
+        copy.setPhysical(schema.isPhysical());
+        copy.setVisible(schema.isVisible());
+        copy.setPrimaryMetamodelUri(schema.getPrimaryMetamodelUri());
+        for (Server server : schema.getServers()) {
+            copy.addServer(server);
+        }
+        for (FunctionMethod function : schema.getFunctions().values()) {
+            copy.addFunction(function);
+        }
+        for (Procedure procedure : schema.getProcedures().values()) {
+            copy.addProcedure(procedure);
+        }
+        for (Table table : schema.getTables().values()) {
+            if (!excludedTables.contains(table.getName())) {
+                copy.addTable(table);
+            }
+        }
+        return copy;
+    }
+
+    private static boolean sameColumns(Table table, Table other) {
+        List<Column> columns = table.getColumns();
+        List<Column> otherColumns = other.getColumns();
+        if (columns.size() != otherColumns.size()) {
+            return false;
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            Column otherColumn = otherColumns.get(i);
+            if (!column.getName().equals(otherColumn.getName())
+                    || !column.getRuntimeType().equals(otherColumn.getRuntimeType())) {
+                return false;
+            }
+        }
+        return true;
     }
 
     private void defineMetadataForDynamicTable(MetadataFactory mf) {
@@ -122,26 +493,157 @@ public class JmxTranslator extends ExecutionFactory<JmxConnectionFactory, JmxCon
         param.setNullType(NullType.No_Nulls);
     }
 
+    private void defineHistoryTable(MetadataFactory mf) {
+        Table table = mf.addTable(HistorySampler.HISTORY_TABLE);
+        table.setSupportsUpdate(false);
+        table.setAnnotation("Sampled numeric attribute values");
+        addOrUpdateCol(mf, table, HistoryExecution.TIMESTAMP_COLUMN, TypeFacility.RUNTIME_NAMES.TIMESTAMP,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, HistoryExecution.NODE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, HistoryExecution.OBJECT_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, HistoryExecution.ATTRIBUTE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, HistoryExecution.VALUE_COLUMN, TypeFacility.RUNTIME_NAMES.DOUBLE,
+                SearchType.All_Except_Like);
+    }
+
+    private void defineNotificationsTable(MetadataFactory mf) {
+        Table table = mf.addTable(NotificationCollector.NOTIFICATIONS_TABLE);
+        table.setSupportsUpdate(false);
+        table.setAnnotation("Recently received notifications");
+        addOrUpdateCol(mf, table, NotificationExecution.SEQ_COLUMN, TypeFacility.RUNTIME_NAMES.LONG,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, table, NotificationExecution.TIMESTAMP_COLUMN, TypeFacility.RUNTIME_NAMES.TIMESTAMP,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, table, NotificationExecution.NODE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, NotificationExecution.OBJECT_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, NotificationExecution.TYPE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, NotificationExecution.MESSAGE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, table, NotificationExecution.SEQUENCE_NUMBER_COLUMN, TypeFacility.RUNTIME_NAMES.LONG,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, table, NotificationExecution.USER_DATA_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Unsearchable);
+    }
+
+    private void definePlatformTable(MetadataFactory mf, PlatformTables.PlatformTable<?> platformTable) {
+        Table table = mf.addTable(platformTable.getName());
+        table.setSupportsUpdate(false);
+        table.setAnnotation(platformTable.getAnnotation());
+        for (int i = 0; i < platformTable.getColumnNames().size(); i++) {
+            String type = platformTable.getColumnTypes().get(i);
+            addOrUpdateCol(mf, table, platformTable.getColumnNames().get(i), type,
+                    type.equals(TypeFacility.RUNTIME_NAMES.STRING) ? SearchType.Searchable
+                            : SearchType.All_Except_Like);
+        }
+    }
+
+    private void defineThreadTables(MetadataFactory mf) {
+        Table threads = mf.addTable(ThreadsExecution.THREADS_TABLE);
+        threads.setSupportsUpdate(false);
+        threads.setAnnotation("The live threads");
+        addOrUpdateCol(mf, threads, ThreadsExecution.THREAD_ID_COLUMN, TypeFacility.RUNTIME_NAMES.LONG,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, threads, ThreadsExecution.NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, threads, ThreadsExecution.STATE_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        for (String column : Arrays.asList(ThreadsExecution.CPU_TIME_COLUMN, ThreadsExecution.USER_TIME_COLUMN,
+                ThreadsExecution.BLOCKED_COUNT_COLUMN, ThreadsExecution.BLOCKED_TIME_COLUMN,
+                ThreadsExecution.WAITED_COUNT_COLUMN, ThreadsExecution.WAITED_TIME_COLUMN)) {
+            addOrUpdateCol(mf, threads, column, TypeFacility.RUNTIME_NAMES.LONG, SearchType.All_Except_Like);
+        }
+        addOrUpdateCol(mf, threads, ThreadsExecution.LOCK_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, threads, ThreadsExecution.LOCK_OWNER_ID_COLUMN, TypeFacility.RUNTIME_NAMES.LONG,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, threads, ThreadsExecution.LOCK_OWNER_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, threads, ThreadsExecution.IN_NATIVE_COLUMN, TypeFacility.RUNTIME_NAMES.BOOLEAN,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, threads, ThreadsExecution.SUSPENDED_COLUMN, TypeFacility.RUNTIME_NAMES.BOOLEAN,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, threads, ThreadsExecution.LOCKED_MONITORS_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, threads, ThreadsExecution.LOCKED_SYNCHRONIZERS_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        mf.addPrimaryKey("pk_" + ThreadsExecution.THREADS_TABLE,
+                Arrays.asList(ThreadsExecution.THREAD_ID_COLUMN), threads);
+        threads.setCardinality(THREADS_CARDINALITY);
+        threads.getColumnByName(ThreadsExecution.THREAD_ID_COLUMN).setDistinctValues(THREADS_CARDINALITY);
+        threads.getColumnByName(ThreadsExecution.NAME_COLUMN).setDistinctValues(THREADS_CARDINALITY);
+        threads.getColumnByName(ThreadsExecution.STATE_COLUMN).setDistinctValues(Thread.State.values().length);
+
+        Table frames = mf.addTable(ThreadsExecution.FRAMES_TABLE);
+        frames.setSupportsUpdate(false);
+        frames.setAnnotation("The stack frames of the live threads");
+        addOrUpdateCol(mf, frames, ThreadsExecution.THREAD_ID_COLUMN, TypeFacility.RUNTIME_NAMES.LONG,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, frames, ThreadsExecution.THREAD_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, frames, ThreadsExecution.DEPTH_COLUMN, TypeFacility.RUNTIME_NAMES.INTEGER,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, frames, ThreadsExecution.CLASS_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, frames, ThreadsExecution.METHOD_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, frames, ThreadsExecution.FILE_NAME_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        addOrUpdateCol(mf, frames, ThreadsExecution.LINE_NUMBER_COLUMN, TypeFacility.RUNTIME_NAMES.INTEGER,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, frames, ThreadsExecution.NATIVE_METHOD_COLUMN, TypeFacility.RUNTIME_NAMES.BOOLEAN,
+                SearchType.All_Except_Like);
+        addOrUpdateCol(mf, frames, ThreadsExecution.LOCKED_MONITOR_COLUMN, TypeFacility.RUNTIME_NAMES.STRING,
+                SearchType.Searchable);
+        mf.addPrimaryKey("pk_" + ThreadsExecution.FRAMES_TABLE,
+                Arrays.asList(ThreadsExecution.THREAD_ID_COLUMN, ThreadsExecution.DEPTH_COLUMN), frames);
+        mf.addForeignKey("fk_" + ThreadsExecution.FRAMES_TABLE, Arrays.asList(ThreadsExecution.THREAD_ID_COLUMN),
+                ThreadsExecution.THREADS_TABLE, frames);
+        frames.setCardinality(THREADS_CARDINALITY * FRAMES_PER_THREAD);
+        frames.getColumnByName(ThreadsExecution.THREAD_ID_COLUMN).setDistinctValues(THREADS_CARDINALITY);
+        frames.getColumnByName(ThreadsExecution.DEPTH_COLUMN).setDistinctValues(FRAMES_PER_THREAD);
+    }
+
     private Table addOrUpdateTable(MetadataFactory mf, MBeanInfo info, String tableName) {
         MBeanAttributeInfo[] attrInfo = info.getAttributes();
 
-        // We do a containsKey due to the installDirtyHackForDynamicTableCreation method..
-        // consult it first before modifying.
-        if (!mf.getSchema().getTables().containsKey(SQLStringVisitor.escapeSinglePart(tableName))) {
+        // the same table is built from the MBeans of each class of a group, or from each node
+        if (mf.getSchema().getTable(tableName) == null) {
             Table table = mf.addTable(tableName);
             table.setSupportsUpdate(false);
         }
 
         Table table = mf.getSchema().getTable(tableName);
-        addOrUpdateCol(mf, table, OBJECT_NAME_COLUMN, "string");
+        addOrUpdateCol(mf, table, OBJECT_NAME_COLUMN, "string", SearchType.Searchable);
         for (MBeanAttributeInfo attr : attrInfo) {
             addOrUpdateCol(mf, table, SQLStringVisitor.escapeSinglePart(attr.getName()),
-                    getRuntimeType(attr.getType()));
+                    getRuntimeType(attr.getType()), SearchType.Unsearchable);
         }
         return table;
     }
 
+    /**
+     * @return the name of the column exposing the given ObjectName key property
+     */
+    protected static String getKeyColumnName(String key) {
+        return "$" + key;
+    }
+
     protected static String getRuntimeType(String type) {
+        String result = RUNTIME_TYPES.get(type);
+        if (result == null) {
+            result = resolveRuntimeType(type);
+            RUNTIME_TYPES.put(type, result);
+        }
+        return result;
+    }
+
+    private static String resolveRuntimeType(String type) {
         boolean array = false;
         if (type.indexOf('.') != -1) {
             Class<?> clazz = Object.class;
@@ -197,10 +699,10 @@ public class JmxTranslator extends ExecutionFactory<JmxConnectionFactory, JmxCon
         return array?type+"[]":type;
     }
 
-    private void addOrUpdateCol(MetadataFactory mf, Table t, String colName, String sqlType) {
+    private void addOrUpdateCol(MetadataFactory mf, Table t, String colName, String sqlType, SearchType searchType) {
         if (t.getColumnByName(colName) == null) {
             Column c = mf.addColumn(colName, sqlType, t);
-            c.setSearchType(SearchType.Unsearchable);
+            c.setSearchType(searchType);
         }
     }
 }
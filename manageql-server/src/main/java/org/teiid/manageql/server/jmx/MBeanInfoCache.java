@@ -0,0 +1,196 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.IntrospectionException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * Caches the MBeanInfo by ObjectName.
+ * <p>
+ * Entries are invalidated by listening to the registration notifications of the
+ * {@link MBeanServerDelegate}.  Equal MBeanInfo instances, which is typical for the many beans
+ * of the same class, are shared so that the cache costs little more than the map entries.
+ * If the listener can't be registered the cache is bypassed.
+ */
+public class MBeanInfoCache implements NotificationListener {
+
+    private final MBeanServerConnection mbsc;
+    private final ConcurrentHashMap<ObjectName, MBeanInfo> infos = new ConcurrentHashMap<ObjectName, MBeanInfo>();
+    private final Map<MBeanInfo, WeakReference<MBeanInfo>> shared = new WeakHashMap<MBeanInfo, WeakReference<MBeanInfo>>();
+    private final AtomicLong generation = new AtomicLong();
+    private final LatencyHistogram latency;
+    private volatile boolean listening;
+
+    public MBeanInfoCache(MBeanServerConnection mbsc) {
+        this(mbsc, null);
+    }
+
+    /**
+     * @param latency records the latency of the calls to the MBeanServer, may be null
+     */
+    public MBeanInfoCache(MBeanServerConnection mbsc, LatencyHistogram latency) {
+        this.mbsc = mbsc;
+        this.latency = latency;
+    }
+
+    public void start() {
+        MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+        filter.enableAllObjectNames();
+        try {
+            this.mbsc.addNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this, filter, null);
+            this.listening = true;
+        } catch (InstanceNotFoundException | IOException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR,
+                    "Could not listen for MBean registrations, MBeanInfo will not be cached: " + e);
+        }
+    }
+
+    /**
+     * Drop all entries and listen again, to be used after the connection has been replaced
+     */
+    public synchronized void restart() {
+        this.listening = false;
+        try {
+            // still registered if only notifications were lost
+            this.mbsc.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+        } catch (InstanceNotFoundException | ListenerNotFoundException | IOException e) {
+            // not registered with this connection
+        }
+        clear();
+        start();
+    }
+
+    public void close() {
+        if (!this.listening) {
+            return;
+        }
+        this.listening = false;
+        clear();
+        try {
+            this.mbsc.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this);
+        } catch (InstanceNotFoundException | ListenerNotFoundException | IOException e) {
+            // the connection is going away
+        }
+    }
+
+    public MBeanInfo getMBeanInfo(ObjectName name)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        if (!this.listening) {
+            return fetch(name);
+        }
+        MBeanInfo info = this.infos.get(name);
+        if (info != null) {
+            return info;
+        }
+        long current = this.generation.get();
+        info = share(fetch(name));
+        this.infos.put(name, info);
+        if (current != this.generation.get()) {
+            // a registration change may have raced with the fetch
+            this.infos.remove(name);
+        }
+        return info;
+    }
+
+    /**
+     * @return the cached MBeanInfo, or null if {@link #getMBeanInfo(ObjectName)} would fetch it
+     */
+    public MBeanInfo getCached(ObjectName name) {
+        if (!this.listening) {
+            return null;
+        }
+        return this.infos.get(name);
+    }
+
+    private MBeanInfo fetch(ObjectName name)
+            throws InstanceNotFoundException, IntrospectionException, ReflectionException, IOException {
+        if (this.latency == null) {
+            return this.mbsc.getMBeanInfo(name);
+        }
+        long start = System.nanoTime();
+        try {
+            return this.mbsc.getMBeanInfo(name);
+        } finally {
+            this.latency.recordSince(start);
+        }
+    }
+
+    private MBeanInfo share(MBeanInfo info) {
+        synchronized (this.shared) {
+            WeakReference<MBeanInfo> ref = this.shared.get(info);
+            MBeanInfo existing = ref == null ? null : ref.get();
+            if (existing != null) {
+                return existing;
+            }
+            this.shared.put(info, new WeakReference<MBeanInfo>(info));
+            return info;
+        }
+    }
+
+    /**
+     * The generation is incremented for every registration or unregistration.
+     * @return the current generation or -1 if registrations are not being tracked
+     */
+    public long getGeneration() {
+        if (!this.listening) {
+            return -1;
+        }
+        return this.generation.get();
+    }
+
+    /**
+     * Drop all entries, to be used when notifications may have been lost
+     */
+    public void clear() {
+        this.generation.incrementAndGet();
+        this.infos.clear();
+    }
+
+    public int size() {
+        return this.infos.size();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        if (notification instanceof MBeanServerNotification) {
+            this.generation.incrementAndGet();
+            this.infos.remove(((MBeanServerNotification)notification).getMBeanName());
+        }
+    }
+}
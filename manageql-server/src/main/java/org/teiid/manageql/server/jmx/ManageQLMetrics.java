@@ -0,0 +1,251 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.manageql.server.jmx.LatencyHistogram.LatencyStats;
+
+/**
+ * Counters and latency histograms for the queries, the JMX calls they make and the table
+ * definitions, all of which may be updated concurrently without locking.
+ */
+public class ManageQLMetrics implements ManageQLMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.teiid.manageql:type=Metrics";
+
+    // the tables are typically the few that dashboards poll, beyond this only the totals are kept
+    static final int MAX_TABLES = 1000;
+
+    public static class TableStats {
+        private final long queries;
+        private final long rows;
+        private final LatencyStats latency;
+
+        TableStats(TableMetrics metrics) {
+            this.queries = metrics.queries.sum();
+            this.rows = metrics.rows.sum();
+            this.latency = metrics.latency.getStats();
+        }
+
+        public long getQueries() {
+            return queries;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public LatencyStats getLatency() {
+            return latency;
+        }
+    }
+
+    static class TableMetrics {
+        final LongAdder queries = new LongAdder();
+        final LongAdder rows = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+    }
+
+    private final JmxConnectionFactory factory;
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder ddlRebuilds = new LongAdder();
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+    private final LatencyHistogram queryMBeansLatency = new LatencyHistogram();
+    private final LatencyHistogram getAttributesLatency = new LatencyHistogram();
+    private final LatencyHistogram getMBeanInfoLatency = new LatencyHistogram();
+    private final LatencyHistogram preParseLatency = new LatencyHistogram();
+    private final ConcurrentHashMap<String, TableMetrics> tables = new ConcurrentHashMap<String, TableMetrics>();
+    private ObjectName registeredName;
+
+    /**
+     * @param factory the factory whose coalescing counts are reported, may be null
+     */
+    public ManageQLMetrics(JmxConnectionFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Record a query of a table that returned the rows
+     */
+    public void recordQuery(String table, long rowCount, long nanos) {
+        this.queries.increment();
+        this.rows.add(rowCount);
+        this.queryLatency.record(nanos);
+        TableMetrics metrics = this.tables.get(table);
+        if (metrics == null) {
+            if (this.tables.size() >= MAX_TABLES) {
+                return;
+            }
+            metrics = this.tables.computeIfAbsent(table, k -> new TableMetrics());
+        }
+        metrics.queries.increment();
+        metrics.rows.add(rowCount);
+        metrics.latency.record(nanos);
+    }
+
+    public void recordDdlRebuild() {
+        this.ddlRebuilds.increment();
+    }
+
+    LatencyHistogram getQueryMBeansHistogram() {
+        return queryMBeansLatency;
+    }
+
+    LatencyHistogram getGetAttributesHistogram() {
+        return getAttributesLatency;
+    }
+
+    LatencyHistogram getGetMBeanInfoHistogram() {
+        return getMBeanInfoLatency;
+    }
+
+    public LatencyHistogram getPreParseHistogram() {
+        return preParseLatency;
+    }
+
+    @Override
+    public long getQueriesExecuted() {
+        return queries.sum();
+    }
+
+    @Override
+    public long getRowsReturned() {
+        return rows.sum();
+    }
+
+    @Override
+    public LatencyStats getQueryLatency() {
+        return queryLatency.getStats();
+    }
+
+    @Override
+    public LatencyStats getQueryMBeansLatency() {
+        return queryMBeansLatency.getStats();
+    }
+
+    @Override
+    public LatencyStats getGetAttributesLatency() {
+        return getAttributesLatency.getStats();
+    }
+
+    @Override
+    public LatencyStats getGetMBeanInfoLatency() {
+        return getMBeanInfoLatency.getStats();
+    }
+
+    @Override
+    public LatencyStats getPreParseLatency() {
+        return preParseLatency.getStats();
+    }
+
+    @Override
+    public long getDdlRebuilds() {
+        return ddlRebuilds.sum();
+    }
+
+    @Override
+    public long getCoalescedRequests() {
+        return factory == null ? 0 : factory.getCoalescedRequests();
+    }
+
+    @Override
+    public long getCoalescedHits() {
+        return factory == null ? 0 : factory.getCoalescedHits();
+    }
+
+    @Override
+    public long getGovernorThrottled() {
+        return factory == null ? 0 : factory.getGovernor().getThrottled();
+    }
+
+    @Override
+    public long getGovernorRejected() {
+        return factory == null ? 0 : factory.getGovernor().getRejected();
+    }
+
+    @Override
+    public long getAttributeTimeouts() {
+        return factory == null ? 0 : factory.getSlowAttributes().getTimeouts();
+    }
+
+    @Override
+    public Map<String, TableStats> getTables() {
+        Map<String, TableStats> result = new TreeMap<String, TableStats>();
+        for (Map.Entry<String, TableMetrics> entry : this.tables.entrySet()) {
+            result.put(entry.getKey(), new TableStats(entry.getValue()));
+        }
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        this.queries.reset();
+        this.rows.reset();
+        this.ddlRebuilds.reset();
+        this.queryLatency.reset();
+        this.queryMBeansLatency.reset();
+        this.getAttributesLatency.reset();
+        this.getMBeanInfoLatency.reset();
+        this.preParseLatency.reset();
+        this.tables.clear();
+    }
+
+    /**
+     * Register with the platform MBeanServer, only the first of several servers in a JVM is registered
+     */
+    public synchronized void register() {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            mbs.registerMBean(this, name);
+            this.registeredName = name;
+        } catch (InstanceAlreadyExistsException e) {
+            LogManager.logDetail(LogConstants.CTX_CONNECTOR, "ManageQL metrics are already registered by another server");
+        } catch (JMException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Could not register the ManageQL metrics: " + e);
+        }
+    }
+
+    public synchronized void unregister() {
+        if (this.registeredName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.registeredName);
+        } catch (InstanceNotFoundException e) {
+            // already gone
+        } catch (JMException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Could not unregister the ManageQL metrics: " + e);
+        }
+        this.registeredName = null;
+    }
+}
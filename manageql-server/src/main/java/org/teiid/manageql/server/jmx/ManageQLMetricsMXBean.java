@@ -0,0 +1,66 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.util.Map;
+
+import org.teiid.manageql.server.jmx.LatencyHistogram.LatencyStats;
+import org.teiid.manageql.server.jmx.ManageQLMetrics.TableStats;
+
+/**
+ * The statistics of ManageQL itself, registered as {@value ManageQLMetrics#OBJECT_NAME} so that
+ * they may also be queried as a table.  Latencies are in microseconds.
+ */
+public interface ManageQLMetricsMXBean {
+
+    long getQueriesExecuted();
+
+    long getRowsReturned();
+
+    LatencyStats getQueryLatency();
+
+    LatencyStats getQueryMBeansLatency();
+
+    LatencyStats getGetAttributesLatency();
+
+    LatencyStats getGetMBeanInfoLatency();
+
+    LatencyStats getPreParseLatency();
+
+    long getDdlRebuilds();
+
+    long getCoalescedRequests();
+
+    long getCoalescedHits();
+
+    long getGovernorThrottled();
+
+    long getGovernorRejected();
+
+    /**
+     * @return the attribute reads that did not respond within the attribute timeout
+     */
+    long getAttributeTimeouts();
+
+    /**
+     * @return the statistics of each jmx table queried
+     */
+    Map<String, TableStats> getTables();
+
+    void reset();
+}
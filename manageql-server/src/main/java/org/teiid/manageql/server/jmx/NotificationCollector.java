@@ -0,0 +1,310 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.MalformedObjectNameException;
+import javax.management.Notification;
+import javax.management.NotificationBroadcaster;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+
+/**
+ * Subscribes to the notifications of the MBeans matching a set of patterns and keeps the most
+ * recent in a bounded ring, which is exposed as the {@link #NOTIFICATIONS_TABLE} table.
+ * <p>
+ * Every notification is assigned an increasing sequence number, so that clients may read only the
+ * new events with a predicate such as <code>seq &gt; ?</code>.  Recording an event is lock free; once
+ * the ring is full the oldest events are overwritten and counted as dropped.  MBeans registered
+ * after the collector is started are subscribed as they appear.
+ */
+public class NotificationCollector implements NotificationListener {
+
+    public static final String NOTIFICATIONS_TABLE = "jmx_notifications";
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    /**
+     * A received notification
+     */
+    public static class Event {
+        private final long seq;
+        private final long time;
+        private final String node;
+        private final ObjectName source;
+        private final Notification notification;
+
+        Event(long seq, long time, String node, ObjectName source, Notification notification) {
+            this.seq = seq;
+            this.time = time;
+            this.node = node;
+            this.source = source;
+            this.notification = notification;
+        }
+
+        public String getNode() {
+            return node;
+        }
+
+        public long getSeq() {
+            return seq;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public ObjectName getSource() {
+            return source;
+        }
+
+        public Notification getNotification() {
+            return notification;
+        }
+    }
+
+    /**
+     * The handback identifying the source of a notification
+     */
+    private static class Source {
+        final JmxNode node;
+        final ObjectName name;
+
+        Source(JmxNode node, ObjectName name) {
+            this.node = node;
+            this.name = name;
+        }
+    }
+
+    private final List<JmxNode> nodes;
+    private final List<ObjectName> patterns;
+    private final AtomicReferenceArray<Event> ring;
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final ConcurrentHashMap<JmxNode, Set<ObjectName>> subscribed = new ConcurrentHashMap<JmxNode, Set<ObjectName>>();
+    private final NotificationListener registrationListener = (notification, handback) -> {
+        if (!(notification instanceof MBeanServerNotification)) {
+            return;
+        }
+        JmxNode node = (JmxNode)handback;
+        ObjectName name = ((MBeanServerNotification)notification).getMBeanName();
+        if (MBeanServerNotification.REGISTRATION_NOTIFICATION.equals(notification.getType())) {
+            subscribe(node, name);
+        } else {
+            this.subscribed.get(node).remove(name);
+        }
+    };
+    private volatile boolean started;
+
+    public NotificationCollector(List<JmxNode> nodes, List<ObjectName> patterns, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The notification capacity must be positive");
+        }
+        this.nodes = nodes;
+        this.patterns = patterns;
+        this.ring = new AtomicReferenceArray<Event>(capacity);
+        for (JmxNode node : nodes) {
+            this.subscribed.put(node, ConcurrentHashMap.<ObjectName>newKeySet());
+            node.addReconnectListener(() -> resubscribe(node));
+        }
+    }
+
+    /**
+     * Parse patterns separated by <code>;</code>
+     */
+    public static List<ObjectName> parse(String config) throws MalformedObjectNameException {
+        List<ObjectName> result = new ArrayList<ObjectName>();
+        for (String part : config.split(";")) {
+            part = part.trim();
+            if (!part.isEmpty()) {
+                result.add(new ObjectName(part));
+            }
+        }
+        return result;
+    }
+
+    public synchronized void start() throws IOException {
+        if (this.started) {
+            return;
+        }
+        this.started = true;
+        MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+        filter.enableAllObjectNames();
+        for (JmxNode node : this.nodes) {
+            subscribe(node, filter);
+        }
+    }
+
+    private void subscribe(JmxNode node, MBeanServerNotificationFilter filter) throws IOException {
+        try {
+            node.getConnection().addNotificationListener(MBeanServerDelegate.DELEGATE_NAME,
+                    this.registrationListener, filter, node);
+        } catch (InstanceNotFoundException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Could not listen for MBean registrations on "
+                    + node + ", only existing MBeans will be subscribed: " + e);
+        }
+        for (ObjectName pattern : this.patterns) {
+            for (ObjectName name : node.getConnection().queryNames(pattern, null)) {
+                subscribe(node, name);
+            }
+        }
+    }
+
+    /**
+     * Subscribe again after the listeners on the node were lost to a reconnect
+     */
+    synchronized void resubscribe(JmxNode node) {
+        if (!this.started) {
+            return;
+        }
+        // the listeners may still be registered if only notifications were lost
+        unsubscribe(node);
+        MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+        filter.enableAllObjectNames();
+        try {
+            subscribe(node, filter);
+        } catch (IOException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Could not subscribe to notifications on " + node
+                    + " after reconnecting: " + e);
+        }
+    }
+
+    void subscribe(JmxNode node, ObjectName name) {
+        Set<ObjectName> names = this.subscribed.get(node);
+        if (!this.started || names.contains(name) || !matches(name)) {
+            return;
+        }
+        MBeanServerConnection mbsc = node.getConnection();
+        try {
+            if (!mbsc.isInstanceOf(name, NotificationBroadcaster.class.getName())) {
+                return;
+            }
+            if (names.add(name)) {
+                mbsc.addNotificationListener(name, this, null, new Source(node, name));
+            }
+        } catch (InstanceNotFoundException | IOException e) {
+            names.remove(name);
+            LogManager.logDetail(LogConstants.CTX_CONNECTOR, e, "Could not subscribe to notifications from", name);
+        }
+    }
+
+    private boolean matches(ObjectName name) {
+        for (ObjectName pattern : this.patterns) {
+            if (pattern.apply(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void close() {
+        if (!this.started) {
+            return;
+        }
+        this.started = false;
+        for (JmxNode node : this.nodes) {
+            unsubscribe(node);
+        }
+    }
+
+    private void unsubscribe(JmxNode node) {
+        MBeanServerConnection mbsc = node.getConnection();
+        try {
+            mbsc.removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME, this.registrationListener);
+        } catch (InstanceNotFoundException | ListenerNotFoundException | IOException e) {
+            // the connection is going away
+        }
+        Set<ObjectName> names = this.subscribed.get(node);
+        for (ObjectName name : names) {
+            try {
+                mbsc.removeNotificationListener(name, this);
+            } catch (InstanceNotFoundException | ListenerNotFoundException | IOException e) {
+                // already gone
+            }
+        }
+        names.clear();
+    }
+
+    @Override
+    public void handleNotification(Notification notification, Object handback) {
+        Source source = (Source)handback;
+        long seq = this.nextSeq.getAndIncrement();
+        this.ring.set((int)(seq % this.ring.length()), new Event(seq, System.currentTimeMillis(),
+                source.node.getName(), source.name, notification));
+    }
+
+    /**
+     * @return the events with a sequence number in the inclusive range, in sequence order.  Events that
+     * have been overwritten are skipped, and the read stops at an event that is still being recorded.
+     */
+    public List<Event> getEvents(long from, long to) {
+        long end = Math.min(this.nextSeq.get() - 1, to);
+        long start = Math.max(Math.max(from, 0), end - this.ring.length() + 1);
+        List<Event> result = new ArrayList<Event>();
+        for (long seq = start; seq <= end; seq++) {
+            Event event = this.ring.get((int)(seq % this.ring.length()));
+            if (event == null || event.seq < seq) {
+                break;
+            }
+            if (event.seq == seq) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of notifications received
+     */
+    public long getReceived() {
+        return this.nextSeq.get();
+    }
+
+    /**
+     * @return the number of notifications overwritten by newer ones
+     */
+    public long getDropped() {
+        return Math.max(0, this.nextSeq.get() - this.ring.length());
+    }
+
+    public int getCapacity() {
+        return this.ring.length();
+    }
+
+    public int getSubscriptionCount() {
+        int result = 0;
+        for (Set<ObjectName> names : this.subscribed.values()) {
+            result += names.size();
+        }
+        return result;
+    }
+}
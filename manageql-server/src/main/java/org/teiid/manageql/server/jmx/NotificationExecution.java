@@ -0,0 +1,191 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.management.Notification;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.teiid.language.QueryExpression;
+import org.teiid.language.Select;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ResultSetExecution;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Reads the {@link NotificationCollector#NOTIFICATIONS_TABLE} table.  Predicates against the
+ * sequence number narrow the range read from the ring, all predicates are then checked against each event.
+ */
+public class NotificationExecution implements ResultSetExecution {
+
+    public static final String SEQ_COLUMN = "seq";
+    public static final String TIMESTAMP_COLUMN = "ts";
+    public static final String NODE_COLUMN = "node";
+    public static final String OBJECT_NAME_COLUMN = "object_name";
+    public static final String TYPE_COLUMN = "notification_type";
+    public static final String MESSAGE_COLUMN = "message";
+    public static final String SEQUENCE_NUMBER_COLUMN = "sequence_number";
+    public static final String USER_DATA_COLUMN = "user_data";
+
+    private final Select command;
+    private final NotificationCollector collector;
+    private final JmxSelectVistor visitor = new JmxSelectVistor();
+    private List<ColumnPredicate> predicates;
+    private Iterator<NotificationCollector.Event> events;
+    private String[] columnNames;
+    // the rows when ordered or limited
+    private Iterator<List<?>> rows;
+
+    public NotificationExecution(QueryExpression command, NotificationCollector collector) {
+        this.command = (Select)command;
+        this.collector = collector;
+        this.visitor.visitNode(this.command);
+    }
+
+    @Override
+    public void execute() throws TranslatorException {
+        this.predicates = this.visitor.getPredicates();
+        this.columnNames = this.visitor.getColumnNames();
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        for (ColumnPredicate predicate : this.predicates) {
+            if (!predicate.getColumn().equalsIgnoreCase(SEQ_COLUMN) || predicate.isNegated()) {
+                continue;
+            }
+            Object value = predicate.getValues().get(0);
+            if (!(value instanceof Number)) {
+                continue;
+            }
+            long seq = ((Number)value).longValue();
+            switch (predicate.getOperator()) {
+            case EQ:
+                from = Math.max(from, seq);
+                to = Math.min(to, seq);
+                break;
+            case GT:
+                from = Math.max(from, seq == Long.MAX_VALUE ? seq : seq + 1);
+                break;
+            case GE:
+                from = Math.max(from, seq);
+                break;
+            case LT:
+                to = Math.min(to, seq == Long.MIN_VALUE ? seq : seq - 1);
+                break;
+            case LE:
+                to = Math.min(to, seq);
+                break;
+            default:
+                break;
+            }
+        }
+        if (from > to || this.collector == null) {
+            this.events = new ArrayList<NotificationCollector.Event>(0).iterator();
+        } else {
+            this.events = this.collector.getEvents(from, to).iterator();
+        }
+        int[] sortColumns = this.visitor.getSortColumns();
+        if (sortColumns.length > 0 || this.visitor.getRowLimit() >= 0) {
+            RowSorter sorter = new RowSorter(sortColumns, this.visitor.getSortDescending(),
+                    this.visitor.getRowOffset(), this.visitor.getRowLimit());
+            while (!sorter.isFull()) {
+                List<?> row = readRow();
+                if (row == null) {
+                    break;
+                }
+                sorter.add(row);
+            }
+            this.rows = sorter.getRows().iterator();
+        }
+    }
+
+    @Override
+    public List<?> next() throws TranslatorException, DataNotAvailableException {
+        if (this.rows != null) {
+            return this.rows.hasNext() ? this.rows.next() : null;
+        }
+        return readRow();
+    }
+
+    private List<?> readRow() {
+        while (this.events.hasNext()) {
+            NotificationCollector.Event event = this.events.next();
+            if (matches(event)) {
+                Object[] row = new Object[this.columnNames.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = getValue(event, this.columnNames[i]);
+                }
+                return Arrays.asList(row);
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(NotificationCollector.Event event) {
+        for (ColumnPredicate predicate : this.predicates) {
+            if (!predicate.matches(getValue(event, predicate.getColumn()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Object getValue(NotificationCollector.Event event, String column) {
+        Notification notification = event.getNotification();
+        if (column.equalsIgnoreCase(SEQ_COLUMN)) {
+            return event.getSeq();
+        } else if (column.equalsIgnoreCase(TIMESTAMP_COLUMN)) {
+            return new Timestamp(event.getTime());
+        } else if (column.equalsIgnoreCase(NODE_COLUMN)) {
+            return event.getNode();
+        } else if (column.equalsIgnoreCase(OBJECT_NAME_COLUMN)) {
+            return event.getSource() == null ? null : event.getSource().getCanonicalName();
+        } else if (column.equalsIgnoreCase(TYPE_COLUMN)) {
+            return notification.getType();
+        } else if (column.equalsIgnoreCase(MESSAGE_COLUMN)) {
+            return notification.getMessage();
+        } else if (column.equalsIgnoreCase(SEQUENCE_NUMBER_COLUMN)) {
+            return notification.getSequenceNumber();
+        } else if (column.equalsIgnoreCase(USER_DATA_COLUMN)) {
+            Object userData = notification.getUserData();
+            if (userData == null) {
+                return null;
+            }
+            if (userData instanceof CompositeData || userData instanceof TabularData || userData.getClass().isArray()) {
+                return JmxJsonUtil.toJson(userData);
+            }
+            return userData.toString();
+        }
+        return null;
+    }
+
+    @Override
+    public void close() {
+        this.events = null;
+        this.rows = null;
+    }
+
+    @Override
+    public void cancel() throws TranslatorException {
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.QueryExp;
+
+/**
+ * Filter built from the predicates pushed down against the "$ObjectName" and key property
+ * columns of a jmx table.
+ * <p>
+ * The filter is used in two ways: {@link #narrow(ObjectName)} rewrites the table pattern into
+ * the narrowest set of ObjectName patterns implied by the predicates, and {@link #apply(ObjectName)}
+ * checks the remaining predicates so that attributes are only ever read for matching beans.
+ */
+public class ObjectNameFilter implements QueryExp {
+
+    private static final long serialVersionUID = 4200385004958640829L;
+
+    /**
+     * Upper bound on the number of patterns produced from IN predicates on key properties
+     */
+    static final int MAX_PATTERNS = 64;
+
+    private final List<ColumnPredicate> predicates;
+
+    public ObjectNameFilter(List<ColumnPredicate> predicates) {
+        this.predicates = predicates;
+    }
+
+    public boolean isEmpty() {
+        return predicates.isEmpty();
+    }
+
+    @Override
+    public boolean apply(ObjectName name) {
+        for (ColumnPredicate predicate : predicates) {
+            if (!predicate.matches(getValue(name, predicate))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void setMBeanServer(MBeanServer s) {
+    }
+
+    private static Object getValue(ObjectName name, ColumnPredicate predicate) {
+        if (predicate.getKeyProperty() == null) {
+            return name.getCanonicalName();
+        }
+        return name.getKeyProperty(predicate.getKeyProperty());
+    }
+
+    /**
+     * Narrow the given table pattern using the equality predicates.
+     * @return the names or patterns to query, the results must still be checked with {@link #apply(ObjectName)}
+     */
+    public List<ObjectName> narrow(ObjectName pattern) {
+        for (ColumnPredicate predicate : predicates) {
+            if (predicate.getKeyProperty() == null && predicate.isEquality()) {
+                List<ObjectName> result = new ArrayList<ObjectName>();
+                for (Object value : new LinkedHashSet<Object>(predicate.getValues())) {
+                    try {
+                        ObjectName name = new ObjectName(String.valueOf(value));
+                        if (!name.isPattern() && pattern.apply(name)) {
+                            result.add(name);
+                        }
+                    } catch (MalformedObjectNameException e) {
+                        // can't match any bean
+                    }
+                }
+                return result;
+            }
+        }
+
+        if (!pattern.isPropertyListPattern()) {
+            return Collections.singletonList(pattern);
+        }
+
+        List<String> keyLists = new ArrayList<String>();
+        keyLists.add(pattern.getKeyPropertyListString());
+        for (ColumnPredicate predicate : predicates) {
+            String key = predicate.getKeyProperty();
+            if (key == null || !predicate.isEquality() || pattern.getKeyProperty(key) != null) {
+                continue;
+            }
+            Set<Object> values = new LinkedHashSet<Object>(predicate.getValues());
+            if (!isPatternSafe(values) || keyLists.size() * values.size() > MAX_PATTERNS) {
+                continue;
+            }
+            List<String> expanded = new ArrayList<String>();
+            for (String keyList : keyLists) {
+                for (Object value : values) {
+                    expanded.add((keyList.isEmpty() ? "" : keyList + ",") + key + "=" + value);
+                }
+            }
+            keyLists = expanded;
+        }
+
+        List<ObjectName> result = new ArrayList<ObjectName>(keyLists.size());
+        for (String keyList : keyLists) {
+            try {
+                result.add(new ObjectName(pattern.getDomain() + ":" + (keyList.isEmpty() ? "" : keyList + ",") + "*"));
+            } catch (MalformedObjectNameException e) {
+                return Collections.singletonList(pattern);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Values that would need quoting or that contain wildcards can't be expressed in an
+     * ObjectName pattern with the same meaning as the SQL equality.
+     */
+    private static boolean isPatternSafe(Set<Object> values) {
+        for (Object value : values) {
+            String s = String.valueOf(value);
+            if (s.isEmpty()) {
+                return false;
+            }
+            for (int i = 0; i < s.length(); i++) {
+                switch (s.charAt(i)) {
+                case ',':
+                case '=':
+                case ':':
+                case '"':
+                case '*':
+                case '?':
+                case '\n':
+                    return false;
+                default:
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return predicates.toString();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.teiid.language.QueryExpression;
+import org.teiid.language.Select;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ResultSetExecution;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Reads a {@link PlatformTables} table.  The rows are read from the platform MXBeans when the query is
+ * executed, the pushed down predicates are checked against each row before it is projected.
+ */
+public class PlatformExecution implements ResultSetExecution {
+
+    private final Select command;
+    private final PlatformTables.PlatformTable<?> table;
+    private final JmxSelectVistor visitor = new JmxSelectVistor();
+    private List<ColumnPredicate> predicates;
+    private int[] predicateColumns;
+    private int[] projection;
+    private Iterator<Object[]> values;
+    // the rows when ordered or limited
+    private Iterator<List<?>> rows;
+
+    public PlatformExecution(QueryExpression command, PlatformTables.PlatformTable<?> table) {
+        this.command = (Select)command;
+        this.table = table;
+        this.visitor.visitNode(this.command);
+    }
+
+    @Override
+    public void execute() throws TranslatorException {
+        Map<String, Integer> ordinals = new TreeMap<String, Integer>(String.CASE_INSENSITIVE_ORDER);
+        List<String> columnNames = this.table.getColumnNames();
+        for (int i = 0; i < columnNames.size(); i++) {
+            ordinals.put(columnNames.get(i), i);
+        }
+        String[] projected = this.visitor.getColumnNames();
+        this.projection = new int[projected.length];
+        for (int i = 0; i < projected.length; i++) {
+            this.projection[i] = getOrdinal(ordinals, projected[i]);
+        }
+        this.predicates = this.visitor.getPredicates();
+        this.predicateColumns = new int[this.predicates.size()];
+        for (int i = 0; i < this.predicateColumns.length; i++) {
+            this.predicateColumns[i] = getOrdinal(ordinals, this.predicates.get(i).getColumn());
+        }
+        this.values = this.table.getRows().iterator();
+
+        int[] sortColumns = this.visitor.getSortColumns();
+        if (sortColumns.length > 0 || this.visitor.getRowLimit() >= 0) {
+            RowSorter sorter = new RowSorter(sortColumns, this.visitor.getSortDescending(),
+                    this.visitor.getRowOffset(), this.visitor.getRowLimit());
+            while (!sorter.isFull()) {
+                List<?> row = readRow();
+                if (row == null) {
+                    break;
+                }
+                sorter.add(row);
+            }
+            this.rows = sorter.getRows().iterator();
+        }
+    }
+
+    private int getOrdinal(Map<String, Integer> ordinals, String column) throws TranslatorException {
+        Integer ordinal = ordinals.get(column);
+        if (ordinal == null) {
+            throw new TranslatorException("Unknown column " + column + " of " + this.table.getName());
+        }
+        return ordinal;
+    }
+
+    @Override
+    public List<?> next() throws TranslatorException, DataNotAvailableException {
+        if (this.rows != null) {
+            return this.rows.hasNext() ? this.rows.next() : null;
+        }
+        return readRow();
+    }
+
+    private List<?> readRow() {
+        while (this.values.hasNext()) {
+            Object[] values = this.values.next();
+            if (matches(values)) {
+                Object[] row = new Object[this.projection.length];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = values[this.projection[i]];
+                }
+                return Arrays.asList(row);
+            }
+        }
+        return null;
+    }
+
+    private boolean matches(Object[] values) {
+        for (int i = 0; i < this.predicateColumns.length; i++) {
+            if (!this.predicates.get(i).matches(values[this.predicateColumns[i]])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        this.values = null;
+        this.rows = null;
+    }
+
+    @Override
+    public void cancel() throws TranslatorException {
+    }
+}
@@ -0,0 +1,476 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.translator.TypeFacility;
+
+/**
+ * Tables read directly from the platform MXBeans of the JVM the server runs in, such as
+ * {@link #MEMORY_POOLS_TABLE}.  The MBeanServer dispatch, the OpenType conversion and the json
+ * rendering of CompositeData values are skipped, the memory usage fields are typed columns of their own.
+ * <p>
+ * Values that the JVM reports as undefined with a negative number, such as the max of a memory usage,
+ * are null.
+ * <p>
+ * The {@link #METRICS_TABLE} of the server's own metrics is also read in process, so that unlike the
+ * other tables it is available whichever nodes are queried.
+ */
+public class PlatformTables {
+
+    public static final String MEMORY_TABLE = "jmx_memory";
+    public static final String MEMORY_POOLS_TABLE = "jmx_memory_pools";
+    public static final String GARBAGE_COLLECTORS_TABLE = "jmx_garbage_collectors";
+    public static final String THREADING_TABLE = "jmx_threading";
+    public static final String CLASS_LOADING_TABLE = "jmx_class_loading";
+    public static final String COMPILATION_TABLE = "jmx_compilation";
+    public static final String BUFFER_POOLS_TABLE = "jmx_buffer_pools";
+    public static final String OPERATING_SYSTEM_TABLE = "jmx_operating_system";
+    public static final String METRICS_TABLE = "jmx_metrics";
+
+    private static final String STRING = TypeFacility.RUNTIME_NAMES.STRING;
+    private static final String LONG = TypeFacility.RUNTIME_NAMES.LONG;
+    private static final String INTEGER = TypeFacility.RUNTIME_NAMES.INTEGER;
+    private static final String DOUBLE = TypeFacility.RUNTIME_NAMES.DOUBLE;
+    private static final String BOOLEAN = TypeFacility.RUNTIME_NAMES.BOOLEAN;
+
+    /**
+     * A table with a row for each of a list of MXBeans
+     */
+    public abstract static class PlatformTable<T> {
+        private final String name;
+        private final String annotation;
+        private final List<String> columnNames = new ArrayList<String>();
+        private final List<String> columnTypes = new ArrayList<String>();
+
+        PlatformTable(String name, String annotation) {
+            this.name = name;
+            this.annotation = annotation;
+        }
+
+        void column(String columnName, String type) {
+            this.columnNames.add(columnName);
+            this.columnTypes.add(type);
+        }
+
+        void usageColumns(String prefix) {
+            column(prefix + "init", LONG);
+            column(prefix + "used", LONG);
+            column(prefix + "committed", LONG);
+            column(prefix + "max", LONG);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getAnnotation() {
+            return annotation;
+        }
+
+        public List<String> getColumnNames() {
+            return columnNames;
+        }
+
+        public List<String> getColumnTypes() {
+            return columnTypes;
+        }
+
+        /**
+         * @return the values of every row, in the order of the columns
+         */
+        public List<Object[]> getRows() {
+            List<T> beans = getBeans();
+            List<Object[]> result = new ArrayList<Object[]>(beans.size());
+            for (T bean : beans) {
+                result.add(getRow(bean));
+            }
+            return result;
+        }
+
+        abstract List<T> getBeans();
+
+        abstract Object[] getRow(T bean);
+    }
+
+    private static final Map<String, PlatformTable<?>> TABLES = new LinkedHashMap<String, PlatformTable<?>>();
+
+    static {
+        for (PlatformTable<?> table : Arrays.asList(new MemoryTable(), new MemoryPoolsTable(),
+                new GarbageCollectorsTable(), new ThreadingTable(), new ClassLoadingTable(), new CompilationTable(),
+                new BufferPoolsTable(), new OperatingSystemTable())) {
+            TABLES.put(table.getName(), table);
+        }
+    }
+
+    /**
+     * @return true if the factory queries only the JVM the server runs in, which the tables describe
+     */
+    public static boolean isSupported(JmxConnectionFactory factory) {
+        return !factory.isMultiNode()
+                && factory.getNodes().get(0).getConnection() == ManagementFactory.getPlatformMBeanServer();
+    }
+
+    public static Iterable<PlatformTable<?>> getTables() {
+        return TABLES.values();
+    }
+
+    /**
+     * @return the table or null if the name is not that of a platform table
+     */
+    public static PlatformTable<?> getTable(String name) {
+        return TABLES.get(name);
+    }
+
+    /**
+     * @return the table of the metrics, which does not depend on the nodes queried
+     */
+    public static PlatformTable<?> getMetricsTable(ManageQLMetrics metrics) {
+        return new MetricsTable(metrics);
+    }
+
+    static Object[] usage(MemoryUsage usage) {
+        if (usage == null) {
+            return new Object[4];
+        }
+        return new Object[] {defined(usage.getInit()), usage.getUsed(), usage.getCommitted(),
+                defined(usage.getMax())};
+    }
+
+    static Long defined(long value) {
+        return value < 0 ? null : value;
+    }
+
+    static Double defined(double value) {
+        return value < 0 ? null : value;
+    }
+
+    static Object[] concat(Object[]... values) {
+        int length = 0;
+        for (Object[] v : values) {
+            length += v.length;
+        }
+        Object[] result = new Object[length];
+        int i = 0;
+        for (Object[] v : values) {
+            System.arraycopy(v, 0, result, i, v.length);
+            i += v.length;
+        }
+        return result;
+    }
+
+    static String join(String[] names) {
+        return names == null ? null : String.join(",", names);
+    }
+
+    private static class MemoryTable extends PlatformTable<String> {
+        MemoryTable() {
+            super(MEMORY_TABLE, "Heap and non heap memory usage");
+            column("area", STRING);
+            usageColumns("usage_");
+        }
+
+        @Override
+        List<String> getBeans() {
+            return Arrays.asList("HEAP", "NON_HEAP");
+        }
+
+        @Override
+        Object[] getRow(String area) {
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            MemoryUsage usage = area.equals("HEAP") ? memory.getHeapMemoryUsage() : memory.getNonHeapMemoryUsage();
+            return concat(new Object[] {area}, usage(usage));
+        }
+    }
+
+    private static class MemoryPoolsTable extends PlatformTable<MemoryPoolMXBean> {
+        MemoryPoolsTable() {
+            super(MEMORY_POOLS_TABLE, "Memory pool usage");
+            column("name", STRING);
+            column("type", STRING);
+            column("valid", BOOLEAN);
+            usageColumns("usage_");
+            usageColumns("peak_");
+            usageColumns("collection_");
+            column("usage_threshold", LONG);
+            column("usage_threshold_count", LONG);
+            column("memory_managers", STRING);
+        }
+
+        @Override
+        List<MemoryPoolMXBean> getBeans() {
+            return ManagementFactory.getMemoryPoolMXBeans();
+        }
+
+        @Override
+        Object[] getRow(MemoryPoolMXBean pool) {
+            Object[] threshold = new Object[2];
+            if (pool.isUsageThresholdSupported()) {
+                threshold[0] = pool.getUsageThreshold();
+                threshold[1] = pool.getUsageThresholdCount();
+            }
+            return concat(new Object[] {pool.getName(), pool.getType().name(), pool.isValid()},
+                    usage(pool.getUsage()), usage(pool.getPeakUsage()), usage(pool.getCollectionUsage()),
+                    threshold, new Object[] {join(pool.getMemoryManagerNames())});
+        }
+    }
+
+    private static class GarbageCollectorsTable extends PlatformTable<GarbageCollectorMXBean> {
+        GarbageCollectorsTable() {
+            super(GARBAGE_COLLECTORS_TABLE, "Garbage collector activity");
+            column("name", STRING);
+            column("valid", BOOLEAN);
+            column("collection_count", LONG);
+            column("collection_time", LONG);
+            column("memory_pools", STRING);
+        }
+
+        @Override
+        List<GarbageCollectorMXBean> getBeans() {
+            return ManagementFactory.getGarbageCollectorMXBeans();
+        }
+
+        @Override
+        Object[] getRow(GarbageCollectorMXBean gc) {
+            return new Object[] {gc.getName(), gc.isValid(), defined(gc.getCollectionCount()),
+                    defined(gc.getCollectionTime()), join(gc.getMemoryPoolNames())};
+        }
+    }
+
+    private static class ThreadingTable extends PlatformTable<ThreadMXBean> {
+        ThreadingTable() {
+            super(THREADING_TABLE, "Thread counts");
+            column("thread_count", INTEGER);
+            column("peak_thread_count", INTEGER);
+            column("daemon_thread_count", INTEGER);
+            column("total_started_thread_count", LONG);
+            column("thread_cpu_time_enabled", BOOLEAN);
+            column("thread_contention_monitoring_enabled", BOOLEAN);
+        }
+
+        @Override
+        List<ThreadMXBean> getBeans() {
+            return Collections.singletonList(ManagementFactory.getThreadMXBean());
+        }
+
+        @Override
+        Object[] getRow(ThreadMXBean threads) {
+            return new Object[] {threads.getThreadCount(), threads.getPeakThreadCount(),
+                    threads.getDaemonThreadCount(), threads.getTotalStartedThreadCount(),
+                    threads.isThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled(),
+                    threads.isThreadContentionMonitoringSupported() && threads.isThreadContentionMonitoringEnabled()};
+        }
+    }
+
+    private static class ClassLoadingTable extends PlatformTable<ClassLoadingMXBean> {
+        ClassLoadingTable() {
+            super(CLASS_LOADING_TABLE, "Class loading counts");
+            column("loaded_class_count", INTEGER);
+            column("total_loaded_class_count", LONG);
+            column("unloaded_class_count", LONG);
+        }
+
+        @Override
+        List<ClassLoadingMXBean> getBeans() {
+            return Collections.singletonList(ManagementFactory.getClassLoadingMXBean());
+        }
+
+        @Override
+        Object[] getRow(ClassLoadingMXBean classes) {
+            return new Object[] {classes.getLoadedClassCount(), classes.getTotalLoadedClassCount(),
+                    classes.getUnloadedClassCount()};
+        }
+    }
+
+    private static class CompilationTable extends PlatformTable<CompilationMXBean> {
+        CompilationTable() {
+            super(COMPILATION_TABLE, "JIT compilation time");
+            column("name", STRING);
+            column("total_compilation_time", LONG);
+        }
+
+        @Override
+        List<CompilationMXBean> getBeans() {
+            CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+            if (compilation == null) {
+                // no compiler
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(compilation);
+        }
+
+        @Override
+        Object[] getRow(CompilationMXBean compilation) {
+            return new Object[] {compilation.getName(), compilation.isCompilationTimeMonitoringSupported()
+                    ? compilation.getTotalCompilationTime() : null};
+        }
+    }
+
+    private static class BufferPoolsTable extends PlatformTable<BufferPoolMXBean> {
+        BufferPoolsTable() {
+            super(BUFFER_POOLS_TABLE, "Direct and mapped buffer pool usage");
+            column("name", STRING);
+            column("buffer_count", LONG);
+            column("total_capacity", LONG);
+            column("memory_used", LONG);
+        }
+
+        @Override
+        List<BufferPoolMXBean> getBeans() {
+            return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+        }
+
+        @Override
+        Object[] getRow(BufferPoolMXBean pool) {
+            return new Object[] {pool.getName(), pool.getCount(), pool.getTotalCapacity(),
+                    defined(pool.getMemoryUsed())};
+        }
+    }
+
+    private static class OperatingSystemTable extends PlatformTable<OperatingSystemMXBean> {
+        OperatingSystemTable() {
+            super(OPERATING_SYSTEM_TABLE, "Operating system and process resources");
+            column("name", STRING);
+            column("arch", STRING);
+            column("version", STRING);
+            column("available_processors", INTEGER);
+            column("system_load_average", DOUBLE);
+            column("process_cpu_load", DOUBLE);
+            column("system_cpu_load", DOUBLE);
+            column("process_cpu_time", LONG);
+            column("committed_virtual_memory_size", LONG);
+            column("total_physical_memory_size", LONG);
+            column("free_physical_memory_size", LONG);
+            column("total_swap_space_size", LONG);
+            column("free_swap_space_size", LONG);
+            column("open_file_descriptor_count", LONG);
+            column("max_file_descriptor_count", LONG);
+        }
+
+        @Override
+        List<OperatingSystemMXBean> getBeans() {
+            return Collections.singletonList(ManagementFactory.getOperatingSystemMXBean());
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        Object[] getRow(OperatingSystemMXBean os) {
+            Object[] row = new Object[getColumnNames().size()];
+            row[0] = os.getName();
+            row[1] = os.getArch();
+            row[2] = os.getVersion();
+            row[3] = os.getAvailableProcessors();
+            row[4] = defined(os.getSystemLoadAverage());
+            // the rest are only known to the HotSpot and OpenJ9 extensions
+            if (os instanceof com.sun.management.OperatingSystemMXBean) {
+                com.sun.management.OperatingSystemMXBean sun = (com.sun.management.OperatingSystemMXBean)os;
+                row[5] = defined(sun.getProcessCpuLoad());
+                row[6] = defined(sun.getSystemCpuLoad());
+                row[7] = defined(sun.getProcessCpuTime());
+                row[8] = defined(sun.getCommittedVirtualMemorySize());
+                row[9] = defined(sun.getTotalPhysicalMemorySize());
+                row[10] = defined(sun.getFreePhysicalMemorySize());
+                row[11] = defined(sun.getTotalSwapSpaceSize());
+                row[12] = defined(sun.getFreeSwapSpaceSize());
+            }
+            if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+                com.sun.management.UnixOperatingSystemMXBean unix = (com.sun.management.UnixOperatingSystemMXBean)os;
+                row[13] = defined(unix.getOpenFileDescriptorCount());
+                row[14] = defined(unix.getMaxFileDescriptorCount());
+            }
+            return row;
+        }
+    }
+
+    /**
+     * A row for each attribute of the {@link ManageQLMetricsMXBean}, named as the attribute, and a row
+     * for each of the per table counts and latencies.  The counts are in metric_value, and for the
+     * latencies it is the number of calls recorded.
+     */
+    private static class MetricsTable extends PlatformTable<Object[]> {
+        private final ManageQLMetrics metrics;
+
+        MetricsTable(ManageQLMetrics metrics) {
+            super(METRICS_TABLE, "The ManageQL query, call and latency metrics");
+            this.metrics = metrics;
+            column("metric", STRING);
+            column("table_name", STRING);
+            column("metric_value", LONG);
+            column("mean_micros", DOUBLE);
+            column("p50_micros", DOUBLE);
+            column("p90_micros", DOUBLE);
+            column("p99_micros", DOUBLE);
+            column("max_micros", DOUBLE);
+        }
+
+        @Override
+        List<Object[]> getBeans() {
+            List<Object[]> rows = new ArrayList<Object[]>();
+            rows.add(count("QueriesExecuted", null, this.metrics.getQueriesExecuted()));
+            rows.add(count("RowsReturned", null, this.metrics.getRowsReturned()));
+            rows.add(latency("QueryLatency", null, this.metrics.getQueryLatency()));
+            rows.add(latency("QueryMBeansLatency", null, this.metrics.getQueryMBeansLatency()));
+            rows.add(latency("GetAttributesLatency", null, this.metrics.getGetAttributesLatency()));
+            rows.add(latency("GetMBeanInfoLatency", null, this.metrics.getGetMBeanInfoLatency()));
+            rows.add(latency("PreParseLatency", null, this.metrics.getPreParseLatency()));
+            rows.add(count("DdlRebuilds", null, this.metrics.getDdlRebuilds()));
+            rows.add(count("CoalescedRequests", null, this.metrics.getCoalescedRequests()));
+            rows.add(count("CoalescedHits", null, this.metrics.getCoalescedHits()));
+            rows.add(count("GovernorThrottled", null, this.metrics.getGovernorThrottled()));
+            rows.add(count("GovernorRejected", null, this.metrics.getGovernorRejected()));
+            rows.add(count("AttributeTimeouts", null, this.metrics.getAttributeTimeouts()));
+            for (Map.Entry<String, ManageQLMetrics.TableStats> entry : this.metrics.getTables().entrySet()) {
+                ManageQLMetrics.TableStats stats = entry.getValue();
+                rows.add(count("QueriesExecuted", entry.getKey(), stats.getQueries()));
+                rows.add(count("RowsReturned", entry.getKey(), stats.getRows()));
+                rows.add(latency("QueryLatency", entry.getKey(), stats.getLatency()));
+            }
+            return rows;
+        }
+
+        @Override
+        Object[] getRow(Object[] row) {
+            return row;
+        }
+
+        private static Object[] count(String metric, String table, long value) {
+            return new Object[] {metric, table, value, null, null, null, null, null};
+        }
+
+        private static Object[] latency(String metric, String table, LatencyHistogram.LatencyStats stats) {
+            return new Object[] {metric, table, stats.getCount(), stats.getMeanMicros(), stats.getP50Micros(),
+                    stats.getP90Micros(), stats.getP99Micros(), stats.getMaxMicros()};
+        }
+    }
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Limits the load that queries put on the host JVM, which matters most in agent mode where the
+ * queries run inside the application being monitored.
+ * <p>
+ * The JMX calls of all queries share a token bucket, each call to the MBeanServer takes a token and
+ * a query that finds the bucket empty is delayed rather than rejected.  Each query is also limited in
+ * the beans it reads, the bytes it materializes, its wall clock time and the bytes its engine thread
+ * allocates, a query that exceeds one of those is stopped with an error.  A limit of 0 is no limit.
+ */
+public class QueryGovernor {
+
+    private static final int BASE_OBJECT_SIZE = 16;
+    private static final int REFERENCE_SIZE = 8;
+
+    private volatile long nanosPerCall;
+    private volatile long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+    private volatile int maxBeans;
+    private volatile long maxBytes;
+    private volatile long queryTimeout;
+    private volatile long allocationBudget;
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * Sets the JMX calls per second allowed across all queries, with bursts of up to a second's worth
+     */
+    public void setMaxCallsPerSecond(int callsPerSecond) {
+        if (callsPerSecond <= 0) {
+            this.nanosPerCall = 0;
+            this.burstNanos = 0;
+        } else {
+            this.nanosPerCall = TimeUnit.SECONDS.toNanos(1) / callsPerSecond;
+            this.burstNanos = TimeUnit.SECONDS.toNanos(1) - this.nanosPerCall;
+        }
+    }
+
+    public void setMaxBeans(int maxBeans) {
+        this.maxBeans = maxBeans;
+    }
+
+    public int getMaxBeans() {
+        return maxBeans;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Sets the milliseconds a query may take
+     */
+    public void setQueryTimeout(long queryTimeout) {
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Sets the bytes the engine thread may allocate while reading the beans of a query, this is
+     * only enforced if the JVM supports measuring thread allocation
+     */
+    public void setAllocationBudget(long allocationBudget) {
+        this.allocationBudget = allocationBudget;
+    }
+
+    /**
+     * Take a token for a JMX call.  This is the generic cell rate algorithm, equivalent to a token
+     * bucket with a single timestamp as its state.
+     * @return 0 if the call may proceed, otherwise the nanoseconds to wait before trying again
+     */
+    public long tryAcquire() {
+        long interval = this.nanosPerCall;
+        if (interval == 0) {
+            return 0;
+        }
+        while (true) {
+            long now = System.nanoTime();
+            long tat = this.theoreticalArrival.get();
+            long wait = tat - this.burstNanos - now;
+            if (wait > 0) {
+                this.throttled.increment();
+                return wait;
+            }
+            if (this.theoreticalArrival.compareAndSet(tat, Math.max(tat, now) + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Take a token for a JMX call, waiting for one if needed.  This is for the fetching threads, the
+     * engine threads use {@link #tryAcquire()} so that they are not held.
+     * @throws InterruptedIOException if interrupted while waiting, like an interrupted call
+     */
+    public void acquire() throws InterruptedIOException {
+        for (long wait = tryAcquire(); wait > 0; wait = tryAcquire()) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * @return the number of times a query was delayed by the calls per second limit
+     */
+    public long getThrottled() {
+        return throttled.sum();
+    }
+
+    /**
+     * @return the number of queries stopped for exceeding a limit
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the budget for a new query
+     */
+    public Budget newBudget() {
+        return new Budget();
+    }
+
+    /**
+     * The resources used by a single query, it is not safe for concurrent use
+     */
+    public class Budget {
+        private final long deadline;
+        private int beans;
+        private long bytes;
+        private long allocated;
+        private long allocationStart = -1;
+        private boolean exceeded;
+
+        Budget() {
+            long timeout = queryTimeout;
+            this.deadline = timeout > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout) : 0;
+        }
+
+        /**
+         * @return the nanoseconds until the query times out, or {@link Long#MAX_VALUE} if there is no timeout
+         */
+        public long remainingNanos() {
+            if (this.deadline == 0) {
+                return Long.MAX_VALUE;
+            }
+            return this.deadline - System.nanoTime();
+        }
+
+        public void checkTimeout() throws TranslatorException {
+            if (this.deadline != 0 && remainingNanos() <= 0) {
+                reject("The query exceeded the timeout of " + queryTimeout + " ms");
+            }
+        }
+
+        /**
+         * Check that the query may read the number of beans before any are read
+         */
+        public void checkBeanCount(int count) throws TranslatorException {
+            int max = maxBeans;
+            if (max > 0 && count > max) {
+                reject("The query would read " + count + " MBeans, more than the limit of " + max
+                        + ", use a more specific ObjectName pattern or key property predicate");
+            }
+        }
+
+        /**
+         * Account for a bean that has been read along with its attribute values
+         */
+        public void addBean(Object[] values) throws TranslatorException {
+            this.beans++;
+            int max = maxBeans;
+            if (max > 0 && this.beans > max) {
+                reject("The query read more than the limit of " + max + " MBeans");
+            }
+            long limit = maxBytes;
+            if (limit > 0) {
+                for (Object value : values) {
+                    this.bytes += estimateSize(value);
+                }
+                if (this.bytes > limit) {
+                    reject("The query materialized more than the limit of " + limit + " bytes");
+                }
+            }
+        }
+
+        /**
+         * Start measuring the allocation of the current thread
+         */
+        public void startAllocation() {
+            if (allocationBudget > 0) {
+                this.allocationStart = ThreadAllocation.current();
+            }
+        }
+
+        /**
+         * Stop measuring the allocation of the current thread, and check the budget
+         */
+        public void endAllocation() throws TranslatorException {
+            if (this.allocationStart < 0) {
+                return;
+            }
+            long end = ThreadAllocation.current();
+            if (end >= 0) {
+                this.allocated += end - this.allocationStart;
+            }
+            this.allocationStart = -1;
+            long budget = allocationBudget;
+            if (this.allocated > budget) {
+                reject("The query allocated more than the budget of " + budget + " bytes");
+            }
+        }
+
+        private void reject(String message) throws TranslatorException {
+            if (!this.exceeded) {
+                this.exceeded = true;
+                rejected.increment();
+            }
+            throw new TranslatorException(message);
+        }
+    }
+
+    /**
+     * A rough estimate of the retained size of an attribute value
+     */
+    static long estimateSize(Object value) {
+        if (value == null) {
+            return REFERENCE_SIZE;
+        }
+        if (value instanceof String) {
+            return BASE_OBJECT_SIZE * 2 + 2L * ((String)value).length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return BASE_OBJECT_SIZE;
+        }
+        if (value instanceof CompositeData) {
+            long result = BASE_OBJECT_SIZE;
+            for (Object item : ((CompositeData)value).values()) {
+                result += REFERENCE_SIZE + estimateSize(item);
+            }
+            return result;
+        }
+        if (value instanceof TabularData) {
+            long result = BASE_OBJECT_SIZE;
+            for (Object row : ((TabularData)value).values()) {
+                result += REFERENCE_SIZE + estimateSize(row);
+            }
+            return result;
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            if (type.getComponentType().isPrimitive()) {
+                return BASE_OBJECT_SIZE + (long)length * REFERENCE_SIZE;
+            }
+            long result = BASE_OBJECT_SIZE;
+            for (int i = 0; i < length; i++) {
+                result += REFERENCE_SIZE + estimateSize(Array.get(value, i));
+            }
+            return result;
+        }
+        return BASE_OBJECT_SIZE * 4;
+    }
+
+    /**
+     * The allocated bytes of the current thread, when the JVM supports measuring them
+     */
+    static final class ThreadAllocation {
+        private static final com.sun.management.ThreadMXBean THREADS;
+
+        static {
+            com.sun.management.ThreadMXBean threads = null;
+            try {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    threads = (com.sun.management.ThreadMXBean)bean;
+                    if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+                        threads = null;
+                    }
+                }
+            } catch (LinkageError e) {
+                // not a HotSpot based JVM
+            }
+            THREADS = threads;
+        }
+
+        private ThreadAllocation() {
+        }
+
+        /**
+         * @return the bytes allocated by the current thread, or -1 if not supported
+         */
+        static long current() {
+            if (THREADS == null) {
+                return -1;
+            }
+            return THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
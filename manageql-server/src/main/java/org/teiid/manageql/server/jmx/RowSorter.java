@@ -0,0 +1,118 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Orders the rows of an execution by the sort columns, with nulls sorting low.
+ * <p>
+ * With a limit only the rows that may still be returned are retained, in a heap whose head is the
+ * row to be dropped next, so that a top-N query holds N rows however many beans it reads.  Without
+ * sort columns the first rows added are kept in their order.
+ */
+class RowSorter implements Comparator<List<?>> {
+
+    private final int[] columns;
+    private final boolean[] descending;
+    private final int offset;
+    private final long capacity;
+    private final PriorityQueue<List<?>> heap;
+    private final List<List<?>> rows;
+
+    /**
+     * @param limit the maximum number of rows returned, or -1 for all of them
+     */
+    RowSorter(int[] columns, boolean[] descending, int offset, int limit) {
+        this.columns = columns;
+        this.descending = descending;
+        this.offset = offset;
+        this.capacity = limit < 0 ? -1 : (long)offset + limit;
+        if (limit < 0 || columns.length == 0) {
+            this.heap = null;
+            this.rows = new ArrayList<List<?>>();
+        } else {
+            this.heap = new PriorityQueue<List<?>>((int)Math.min(this.capacity, 1024) + 1,
+                    Collections.reverseOrder(this));
+            this.rows = null;
+        }
+    }
+
+    void add(List<?> row) {
+        if (this.heap == null) {
+            if (!isFull()) {
+                this.rows.add(row);
+            }
+            return;
+        }
+        if (this.heap.size() < this.capacity) {
+            this.heap.add(row);
+        } else if (!this.heap.isEmpty() && compare(row, this.heap.peek()) < 0) {
+            this.heap.poll();
+            this.heap.add(row);
+        }
+    }
+
+    /**
+     * @return the sorted rows, less those skipped by the offset
+     */
+    List<List<?>> getRows() {
+        List<List<?>> result = this.rows;
+        if (result == null) {
+            result = new ArrayList<List<?>>(this.heap);
+        }
+        Collections.sort(result, this);
+        if (this.offset >= result.size()) {
+            return Collections.emptyList();
+        }
+        return result.subList(this.offset, result.size());
+    }
+
+    /**
+     * @return true if there are no sort columns and the limit has been reached, so the remaining rows
+     * need not be read
+     */
+    boolean isFull() {
+        return this.heap == null && this.capacity >= 0 && this.rows.size() >= this.capacity;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compare(List<?> row1, List<?> row2) {
+        for (int i = 0; i < this.columns.length; i++) {
+            Object value1 = row1.get(this.columns[i]);
+            Object value2 = row2.get(this.columns[i]);
+            int result;
+            if (value1 == null) {
+                result = value2 == null ? 0 : -1;
+            } else if (value2 == null) {
+                result = 1;
+            } else {
+                result = ((Comparable<Object>)value1).compareTo(value2);
+            }
+            if (result != 0) {
+                return this.descending[i] ? -result : result;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.ListenerNotFoundException;
+import javax.management.MBeanServerDelegate;
+import javax.management.MBeanServerNotification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.relation.MBeanServerNotificationFilter;
+
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.metadata.MetadataFactory;
+import org.teiid.metadata.Schema;
+import org.teiid.query.metadata.SystemMetadata;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Keeps the tables of the deployed schema in step with the MBeans registered and unregistered after
+ * the deployment, rather than only those found when the server started.
+ * <p>
+ * The registration notifications of every node are collected for a window before they are applied,
+ * so that a burst of registrations, such as the MBeans of a new topic or connection pool, costs a
+ * single update of the schema.  Only the tables of the MBeans named by the notifications are rebuilt.
+ * After a node reconnects, when notifications may have been lost, every table is checked against the
+ * registered MBeans.
+ * <p>
+ * The deployed schema is read by queries without any synchronization, so it is never modified.  An
+ * update builds a copy of the schema that is published in its place.
+ */
+public class SchemaUpdater {
+
+    public static final long DEFAULT_WINDOW = 1000;
+
+    private final JmxTranslator translator;
+    private final JmxConnectionFactory factory;
+    private final Supplier<Schema> schema;
+    private final Consumer<Schema> publisher;
+    private final long window;
+    private final MetadataFactory metadataFactory;
+    private final AtomicLong updates = new AtomicLong();
+    private final NotificationListener registrationListener = (notification, handback) -> {
+        if (notification instanceof MBeanServerNotification) {
+            changed(((MBeanServerNotification)notification).getMBeanName());
+        }
+    };
+
+    // the table names to rebuild in the next update
+    private Set<String> pending = new HashSet<String>();
+    private boolean resync;
+    private boolean scheduled;
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param schema supplies the deployed schema, or null if it is not deployed
+     * @param publisher replaces the deployed schema with an updated copy
+     * @param window the milliseconds to collect notifications for before updating the schema
+     */
+    public SchemaUpdater(JmxTranslator translator, JmxConnectionFactory factory, Supplier<Schema> schema,
+            Consumer<Schema> publisher, long window) {
+        this.translator = translator;
+        this.factory = factory;
+        this.schema = schema;
+        this.publisher = publisher;
+        this.window = window;
+        this.metadataFactory = new MetadataFactory("manageql", 1, "jmx",
+                SystemMetadata.getInstance().getRuntimeTypeMap(), new Properties(), null);
+        for (JmxNode node : factory.getNodes()) {
+            node.addReconnectListener(() -> reconnected(node));
+        }
+    }
+
+    public synchronized void start() {
+        if (this.executor != null) {
+            return;
+        }
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new JmxConnectionFactory.NamedThreadFactory("manageql-schema"));
+        for (JmxNode node : this.factory.getNodes()) {
+            listen(node);
+        }
+    }
+
+    private void listen(JmxNode node) {
+        MBeanServerNotificationFilter filter = new MBeanServerNotificationFilter();
+        filter.enableAllObjectNames();
+        try {
+            node.getConnection().addNotificationListener(MBeanServerDelegate.DELEGATE_NAME,
+                    this.registrationListener, filter, node);
+        } catch (InstanceNotFoundException | IOException e) {
+            LogManager.logWarning(LogConstants.CTX_CONNECTOR, "Could not listen for MBean registrations on "
+                    + node + ", tables will not be added for new MBeans: " + e);
+        }
+    }
+
+    private void unlisten(JmxNode node) {
+        try {
+            node.getConnection().removeNotificationListener(MBeanServerDelegate.DELEGATE_NAME,
+                    this.registrationListener);
+        } catch (InstanceNotFoundException | ListenerNotFoundException | IOException e) {
+            // not registered with this connection
+        }
+    }
+
+    synchronized void reconnected(JmxNode node) {
+        if (this.executor == null) {
+            return;
+        }
+        // still registered if only notifications were lost
+        unlisten(node);
+        listen(node);
+        this.resync = true;
+        schedule();
+    }
+
+    synchronized void changed(ObjectName name) {
+        if (this.executor == null) {
+            return;
+        }
+        this.pending.add(this.translator.getTableName(name));
+        schedule();
+    }
+
+    private void schedule() {
+        if (this.scheduled) {
+            return;
+        }
+        this.scheduled = true;
+        this.executor.schedule(() -> {
+            try {
+                update();
+            } catch (Throwable e) {
+                LogManager.logWarning(LogConstants.CTX_CONNECTOR, e, "Could not update the JMX tables");
+            }
+        }, this.window, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Apply the notifications collected since the last update
+     */
+    void update() throws TranslatorException {
+        Set<String> tableNames;
+        boolean all;
+        synchronized (this) {
+            tableNames = this.pending;
+            all = this.resync;
+            this.pending = new HashSet<String>();
+            this.resync = false;
+            this.scheduled = false;
+        }
+        Schema target = this.schema.get();
+        if (target == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        Schema updated;
+        try {
+            if (all) {
+                tableNames.addAll(getStaleTables(target));
+            }
+            if (tableNames.isEmpty()) {
+                return;
+            }
+            updated = this.translator.updateTables(this.metadataFactory, target, this.factory.getNodes(),
+                    this.factory.isMultiNode(), new TreeSet<String>(tableNames));
+        } catch (TranslatorException | RuntimeException e) {
+            retry(tableNames, all);
+            throw e;
+        }
+        if (updated != null) {
+            this.publisher.accept(updated);
+        }
+        this.updates.incrementAndGet();
+        LogManager.logDetail(LogConstants.CTX_CONNECTOR, "Updated", tableNames.size(), "JMX tables in",
+                (System.nanoTime() - start)/1000000, "ms");
+    }
+
+    /**
+     * Return the tables of a failed update to those collected for the next one
+     */
+    private synchronized void retry(Set<String> tableNames, boolean all) {
+        if (this.executor == null) {
+            return;
+        }
+        this.pending.addAll(tableNames);
+        this.resync |= all;
+        schedule();
+    }
+
+    /**
+     * @return the tables of the MBeans that are registered but missing from the schema, and of the
+     * tables in the schema that no longer have any MBean
+     */
+    private Set<String> getStaleTables(Schema target) throws TranslatorException {
+        Set<String> current = new HashSet<String>();
+        try {
+            for (JmxNode node : this.factory.getNodes()) {
+                for (ObjectName name : node.getConnection().queryNames(null, null)) {
+                    current.add(this.translator.getTableName(name));
+                }
+            }
+        } catch (IOException e) {
+            throw new TranslatorException(e);
+        }
+        Set<String> result = new HashSet<String>();
+        Set<String> existing = new HashSet<String>();
+        for (String tableName : target.getTables().keySet()) {
+            // only the MBean tables have a domain separator
+            if (tableName.indexOf(':') < 0) {
+                continue;
+            }
+            existing.add(tableName);
+            if (!current.contains(tableName)) {
+                result.add(tableName);
+            }
+        }
+        for (String tableName : current) {
+            if (!existing.contains(tableName)) {
+                result.add(tableName);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of times the schema has been updated, which is only incremented once the
+     * updated schema has been published
+     */
+    public long getUpdates() {
+        return this.updates.get();
+    }
+
+    public synchronized void close() {
+        if (this.executor == null) {
+            return;
+        }
+        this.executor.shutdownNow();
+        this.executor = null;
+        for (JmxNode node : this.factory.getNodes()) {
+            unlisten(node);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the attributes whose getters missed the attribute timeout, so that later fetches read
+ * them on their own rather than holding up the other attributes of the MBean.
+ * <p>
+ * Attributes are keyed by node, table and attribute name.  An attribute is
+ * forgotten once it is read within half of the timeout, or after {@link #RETENTION} so that a getter
+ * that has recovered is grouped with the others again.
+ */
+public class SlowAttributes {
+
+    public static final long RETENTION = TimeUnit.MINUTES.toNanos(10);
+    // bounds the memory if the tables are many, further attributes are not tracked once full
+    static final int MAX_SIZE = 10000;
+
+    private final Map<String, Long> slow = new ConcurrentHashMap<String, Long>();
+    private final LongAdder timeouts = new LongAdder();
+
+    static String getKey(String node, String table, String attribute) {
+        return node + '\u0000' + table + '\u0000' + attribute;
+    }
+
+    /**
+     * @return true if the attribute has missed the timeout, and so should be read on its own
+     */
+    public boolean isSlow(String key) {
+        Long since = this.slow.get(key);
+        if (since == null) {
+            return false;
+        }
+        if (System.nanoTime() - since > RETENTION) {
+            this.slow.remove(key, since);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Record that the attribute did not respond within the timeout
+     */
+    public void timedOut(String key) {
+        this.timeouts.increment();
+        if (this.slow.size() < MAX_SIZE || this.slow.containsKey(key)) {
+            this.slow.put(key, System.nanoTime());
+        }
+    }
+
+    /**
+     * Record the time taken to read an attribute on its own
+     */
+    public void read(String key, long nanos, long timeoutNanos) {
+        if (nanos < timeoutNanos / 2) {
+            this.slow.remove(key);
+        }
+    }
+
+    /**
+     * @return the number of attribute reads that did not respond within the timeout
+     */
+    public long getTimeouts() {
+        return this.timeouts.sum();
+    }
+
+    public int size() {
+        return this.slow.size();
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.lang.management.LockInfo;
+import java.lang.management.MonitorInfo;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.teiid.language.QueryExpression;
+import org.teiid.language.Select;
+import org.teiid.translator.DataNotAvailableException;
+import org.teiid.translator.ResultSetExecution;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Reads the {@link #THREADS_TABLE} and {@link #FRAMES_TABLE} tables.  The ThreadInfo is requested for
+ * {@link #BATCH_SIZE} threads at a time and turned into rows as they are read, so that the memory used
+ * does not grow with the number of threads.
+ * <p>
+ * Predicates against the thread id narrow the threads requested, and those against the frame depth
+ * bound the stack depth requested.  The stack is only requested for the frames table, and the locked
+ * monitors and synchronizers only when their columns are used.  All predicates are then checked
+ * against each thread, before any frames, and each row.
+ * <p>
+ * The threads are read in the order of their ids, and the frames from the top of each stack, so an
+ * ascending order by the thread id, and then the depth, is returned as read rather than collected
+ * and sorted.
+ */
+public class ThreadsExecution implements ResultSetExecution {
+
+    public static final String THREADS_TABLE = "jmx_threads";
+    public static final String FRAMES_TABLE = "jmx_thread_frames";
+
+    public static final String THREAD_ID_COLUMN = "thread_id";
+    public static final String NAME_COLUMN = "name";
+    public static final String STATE_COLUMN = "state";
+    public static final String CPU_TIME_COLUMN = "cpu_time";
+    public static final String USER_TIME_COLUMN = "user_time";
+    public static final String BLOCKED_COUNT_COLUMN = "blocked_count";
+    public static final String BLOCKED_TIME_COLUMN = "blocked_time";
+    public static final String WAITED_COUNT_COLUMN = "waited_count";
+    public static final String WAITED_TIME_COLUMN = "waited_time";
+    public static final String LOCK_NAME_COLUMN = "lock_name";
+    public static final String LOCK_OWNER_ID_COLUMN = "lock_owner_id";
+    public static final String LOCK_OWNER_NAME_COLUMN = "lock_owner_name";
+    public static final String IN_NATIVE_COLUMN = "in_native";
+    public static final String SUSPENDED_COLUMN = "suspended";
+    public static final String LOCKED_MONITORS_COLUMN = "locked_monitors";
+    public static final String LOCKED_SYNCHRONIZERS_COLUMN = "locked_synchronizers";
+
+    public static final String THREAD_NAME_COLUMN = "thread_name";
+    public static final String DEPTH_COLUMN = "depth";
+    public static final String CLASS_NAME_COLUMN = "class_name";
+    public static final String METHOD_NAME_COLUMN = "method_name";
+    public static final String FILE_NAME_COLUMN = "file_name";
+    public static final String LINE_NUMBER_COLUMN = "line_number";
+    public static final String NATIVE_METHOD_COLUMN = "native_method";
+    public static final String LOCKED_MONITOR_COLUMN = "locked_monitor";
+
+    static final int BATCH_SIZE = 256;
+
+    private final Select command;
+    private final ThreadMXBean threads;
+    private final boolean frames;
+    private final JmxSelectVistor visitor = new JmxSelectVistor();
+    private int maxDepth;
+    private String[] columnNames;
+    // checked against the thread, and for the frames table against each frame
+    private List<ColumnPredicate> threadPredicates;
+    private List<ColumnPredicate> framePredicates;
+    private boolean lockedMonitors;
+    private boolean lockedSynchronizers;
+    private long[] ids;
+    private int position;
+    private ThreadInfo[] batch;
+    private int batchPosition;
+    private ThreadInfo thread;
+    private int depth;
+    // the rows when ordered or limited
+    private Iterator<List<?>> rows;
+
+    /**
+     * @param maxDepth the most frames read of each stack, 0 for all of them
+     */
+    public ThreadsExecution(QueryExpression command, ThreadMXBean threads, boolean frames, int maxDepth) {
+        this.command = (Select)command;
+        this.threads = threads;
+        this.frames = frames;
+        this.maxDepth = maxDepth > 0 ? maxDepth : Integer.MAX_VALUE;
+        this.visitor.visitNode(this.command);
+    }
+
+    @Override
+    public void execute() throws TranslatorException {
+        this.columnNames = this.visitor.getColumnNames();
+        this.threadPredicates = new ArrayList<ColumnPredicate>();
+        this.framePredicates = new ArrayList<ColumnPredicate>();
+        for (String column : this.columnNames) {
+            useColumn(column);
+        }
+        for (ColumnPredicate predicate : this.visitor.getPredicates()) {
+            useColumn(predicate.getColumn());
+            if (isThreadColumn(predicate.getColumn())) {
+                this.threadPredicates.add(predicate);
+            } else {
+                this.framePredicates.add(predicate);
+            }
+            if (predicate.isNegated() || !(predicate.getValues().get(0) instanceof Number)) {
+                continue;
+            }
+            if (predicate.getColumn().equalsIgnoreCase(THREAD_ID_COLUMN) && predicate.isEquality() && this.ids == null) {
+                long[] values = new long[predicate.getValues().size()];
+                int count = 0;
+                for (Object value : predicate.getValues()) {
+                    long id = ((Number)value).longValue();
+                    // no thread has such an id, and getThreadInfo rejects it
+                    if (id > 0) {
+                        values[count++] = id;
+                    }
+                }
+                this.ids = Arrays.copyOf(values, count);
+            } else if (predicate.getColumn().equalsIgnoreCase(DEPTH_COLUMN)) {
+                int value = ((Number)predicate.getValues().get(0)).intValue();
+                switch (predicate.getOperator()) {
+                case LT:
+                    this.maxDepth = Math.min(this.maxDepth, Math.max(0, value));
+                    break;
+                case LE:
+                case EQ:
+                    this.maxDepth = Math.min(this.maxDepth, Math.max(0, value + 1));
+                    break;
+                default:
+                    break;
+                }
+            }
+        }
+        if (this.ids == null) {
+            this.ids = this.threads.getAllThreadIds();
+        }
+        // the rows are read in the order of the thread id, and of the depth within a thread
+        this.ids = distinct(this.ids);
+
+        int[] sortColumns = this.visitor.getSortColumns();
+        if (isOrdered(sortColumns)) {
+            sortColumns = new int[0];
+        }
+        if (sortColumns.length > 0 || this.visitor.getRowLimit() >= 0) {
+            RowSorter sorter = new RowSorter(sortColumns, this.visitor.getSortDescending(),
+                    this.visitor.getRowOffset(), this.visitor.getRowLimit());
+            while (!sorter.isFull()) {
+                List<?> row = readRow();
+                if (row == null) {
+                    break;
+                }
+                sorter.add(row);
+            }
+            this.rows = sorter.getRows().iterator();
+        }
+    }
+
+    /**
+     * @return the sorted ids without duplicates
+     */
+    static long[] distinct(long[] ids) {
+        long[] result = ids.clone();
+        Arrays.sort(result);
+        int count = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (count == 0 || result[i] != result[count - 1]) {
+                result[count++] = result[i];
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @return true if the sort columns are an ascending prefix of the thread id and depth, the order
+     * the rows are read in
+     */
+    private boolean isOrdered(int[] sortColumns) {
+        boolean[] descending = this.visitor.getSortDescending();
+        List<String> order = this.frames ? Arrays.asList(THREAD_ID_COLUMN, DEPTH_COLUMN) : Arrays.asList(THREAD_ID_COLUMN);
+        if (sortColumns.length > order.size()) {
+            return false;
+        }
+        for (int i = 0; i < sortColumns.length; i++) {
+            if (descending[i] || !this.columnNames[sortColumns[i]].equalsIgnoreCase(order.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void useColumn(String column) {
+        if (column.equalsIgnoreCase(LOCKED_MONITORS_COLUMN) || column.equalsIgnoreCase(LOCKED_MONITOR_COLUMN)) {
+            this.lockedMonitors = this.threads.isObjectMonitorUsageSupported();
+        } else if (column.equalsIgnoreCase(LOCKED_SYNCHRONIZERS_COLUMN)) {
+            this.lockedSynchronizers = this.threads.isSynchronizerUsageSupported();
+        }
+    }
+
+    private boolean isThreadColumn(String column) {
+        return !this.frames || column.equalsIgnoreCase(THREAD_ID_COLUMN) || column.equalsIgnoreCase(THREAD_NAME_COLUMN);
+    }
+
+    @Override
+    public List<?> next() throws TranslatorException, DataNotAvailableException {
+        if (this.rows != null) {
+            return this.rows.hasNext() ? this.rows.next() : null;
+        }
+        return readRow();
+    }
+
+    private List<?> readRow() {
+        while (true) {
+            if (this.thread != null && this.frames) {
+                StackTraceElement[] stack = this.thread.getStackTrace();
+                while (this.depth < Math.min(stack.length, this.maxDepth)) {
+                    int frame = this.depth++;
+                    if (matches(this.framePredicates, frame, stack[frame])) {
+                        return getRow(frame, stack[frame]);
+                    }
+                }
+            }
+            this.thread = nextThread();
+            this.depth = 0;
+            if (this.thread == null) {
+                return null;
+            }
+            if (!this.frames) {
+                return getRow(-1, null);
+            }
+        }
+    }
+
+    /**
+     * @return the next thread matching the thread predicates, or null if there are no more
+     */
+    private ThreadInfo nextThread() {
+        while (true) {
+            if (this.batch == null || this.batchPosition == this.batch.length) {
+                if (this.position >= this.ids.length) {
+                    return null;
+                }
+                long[] batchIds = Arrays.copyOfRange(this.ids, this.position,
+                        Math.min(this.ids.length, this.position + BATCH_SIZE));
+                this.position += batchIds.length;
+                this.batch = readThreads(batchIds);
+                this.batchPosition = 0;
+            }
+            ThreadInfo info = this.batch[this.batchPosition];
+            // released as read
+            this.batch[this.batchPosition++] = null;
+            // null if the thread has ended
+            if (info != null) {
+                this.thread = info;
+                if (matches(this.threadPredicates, -1, null)) {
+                    return info;
+                }
+            }
+        }
+    }
+
+    private ThreadInfo[] readThreads(long[] batchIds) {
+        if (this.lockedMonitors || this.lockedSynchronizers) {
+            // the whole stack is read with the locks, then limited to the max depth
+            return this.threads.getThreadInfo(batchIds, this.lockedMonitors, this.lockedSynchronizers);
+        }
+        return this.threads.getThreadInfo(batchIds, this.frames ? this.maxDepth : 0);
+    }
+
+    private boolean matches(List<ColumnPredicate> predicates, int frame, StackTraceElement element) {
+        for (ColumnPredicate predicate : predicates) {
+            if (!predicate.matches(getValue(predicate.getColumn(), frame, element))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<?> getRow(int frame, StackTraceElement element) {
+        Object[] row = new Object[this.columnNames.length];
+        for (int i = 0; i < row.length; i++) {
+            row[i] = getValue(this.columnNames[i], frame, element);
+        }
+        return Arrays.asList(row);
+    }
+
+    /**
+     * @return the value of the column for the current thread, and the frame when reading frames
+     */
+    private Object getValue(String column, int frame, StackTraceElement element) {
+        ThreadInfo info = this.thread;
+        if (column.equalsIgnoreCase(THREAD_ID_COLUMN)) {
+            return info.getThreadId();
+        } else if (column.equalsIgnoreCase(NAME_COLUMN) || column.equalsIgnoreCase(THREAD_NAME_COLUMN)) {
+            return info.getThreadName();
+        } else if (element != null) {
+            return getFrameValue(column, frame, element);
+        } else if (column.equalsIgnoreCase(STATE_COLUMN)) {
+            return info.getThreadState().name();
+        } else if (column.equalsIgnoreCase(CPU_TIME_COLUMN)) {
+            return isCpuTimeEnabled() ? PlatformTables.defined(this.threads.getThreadCpuTime(info.getThreadId())) : null;
+        } else if (column.equalsIgnoreCase(USER_TIME_COLUMN)) {
+            return isCpuTimeEnabled() ? PlatformTables.defined(this.threads.getThreadUserTime(info.getThreadId())) : null;
+        } else if (column.equalsIgnoreCase(BLOCKED_COUNT_COLUMN)) {
+            return info.getBlockedCount();
+        } else if (column.equalsIgnoreCase(BLOCKED_TIME_COLUMN)) {
+            return PlatformTables.defined(info.getBlockedTime());
+        } else if (column.equalsIgnoreCase(WAITED_COUNT_COLUMN)) {
+            return info.getWaitedCount();
+        } else if (column.equalsIgnoreCase(WAITED_TIME_COLUMN)) {
+            return PlatformTables.defined(info.getWaitedTime());
+        } else if (column.equalsIgnoreCase(LOCK_NAME_COLUMN)) {
+            return info.getLockName();
+        } else if (column.equalsIgnoreCase(LOCK_OWNER_ID_COLUMN)) {
+            return PlatformTables.defined(info.getLockOwnerId());
+        } else if (column.equalsIgnoreCase(LOCK_OWNER_NAME_COLUMN)) {
+            return info.getLockOwnerName();
+        } else if (column.equalsIgnoreCase(IN_NATIVE_COLUMN)) {
+            return info.isInNative();
+        } else if (column.equalsIgnoreCase(SUSPENDED_COLUMN)) {
+            return info.isSuspended();
+        } else if (column.equalsIgnoreCase(LOCKED_MONITORS_COLUMN)) {
+            return this.lockedMonitors ? join(info.getLockedMonitors()) : null;
+        } else if (column.equalsIgnoreCase(LOCKED_SYNCHRONIZERS_COLUMN)) {
+            return this.lockedSynchronizers ? join(info.getLockedSynchronizers()) : null;
+        }
+        return null;
+    }
+
+    private Object getFrameValue(String column, int frame, StackTraceElement element) {
+        if (column.equalsIgnoreCase(DEPTH_COLUMN)) {
+            return frame;
+        } else if (column.equalsIgnoreCase(CLASS_NAME_COLUMN)) {
+            return element.getClassName();
+        } else if (column.equalsIgnoreCase(METHOD_NAME_COLUMN)) {
+            return element.getMethodName();
+        } else if (column.equalsIgnoreCase(FILE_NAME_COLUMN)) {
+            return element.getFileName();
+        } else if (column.equalsIgnoreCase(LINE_NUMBER_COLUMN)) {
+            return element.getLineNumber() < 0 ? null : element.getLineNumber();
+        } else if (column.equalsIgnoreCase(NATIVE_METHOD_COLUMN)) {
+            return element.isNativeMethod();
+        } else if (column.equalsIgnoreCase(LOCKED_MONITOR_COLUMN) && this.lockedMonitors) {
+            List<MonitorInfo> locked = new ArrayList<MonitorInfo>();
+            for (MonitorInfo monitor : this.thread.getLockedMonitors()) {
+                if (monitor.getLockedStackDepth() == frame) {
+                    locked.add(monitor);
+                }
+            }
+            return locked.isEmpty() ? null : join(locked.toArray(new LockInfo[locked.size()]));
+        }
+        return null;
+    }
+
+    private boolean isCpuTimeEnabled() {
+        return this.threads.isThreadCpuTimeSupported() && this.threads.isThreadCpuTimeEnabled();
+    }
+
+    private static String join(LockInfo[] locks) {
+        StringBuilder result = new StringBuilder();
+        for (LockInfo lock : locks) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(lock);
+        }
+        return result.toString();
+    }
+
+    @Override
+    public void close() {
+        this.batch = null;
+        this.thread = null;
+        this.rows = null;
+    }
+
+    @Override
+    public void cancel() throws TranslatorException {
+    }
+}
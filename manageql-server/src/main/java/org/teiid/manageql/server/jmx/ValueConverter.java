@@ -0,0 +1,33 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Converts an attribute value of a known class to the expected column type.
+ * Obtained from {@link ValueConverters#getConverter(Class, Class)}.
+ */
+public interface ValueConverter {
+
+    /**
+     * @param value non-null value of the source class the converter was resolved for
+     */
+    Object convert(Object value) throws TranslatorException;
+
+}
@@ -0,0 +1,202 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.lang.reflect.Array;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.JsonType;
+import org.teiid.core.types.Transform;
+import org.teiid.core.types.TransformationException;
+import org.teiid.translator.TranslatorException;
+
+/**
+ * Resolves and caches the {@link ValueConverter} for a source class and expected column type,
+ * so that the class checks and transform lookup happen once rather than for every value.
+ * Primitive arrays are converted without reflection.
+ */
+public final class ValueConverters {
+
+    static final ValueConverter IDENTITY = value -> value;
+
+    static final ValueConverter JSON = value -> JmxJsonUtil.converToJson(value);
+
+    /**
+     * The converters of each source class by expected class.  The source classes may be those of the
+     * applications being monitored, so the converters are held by the class rather than by a map that
+     * would keep their class loaders alive.
+     */
+    private static final ClassValue<ConcurrentHashMap<Class<?>, ValueConverter>> CONVERTERS =
+            new ClassValue<ConcurrentHashMap<Class<?>, ValueConverter>>() {
+                @Override
+                protected ConcurrentHashMap<Class<?>, ValueConverter> computeValue(Class<?> sourceClass) {
+                    return new ConcurrentHashMap<Class<?>, ValueConverter>();
+                }
+            };
+
+    private ValueConverters() {
+    }
+
+    public static ValueConverter getConverter(Class<?> sourceClass, Class<?> expectedClass) {
+        ConcurrentHashMap<Class<?>, ValueConverter> byExpected = CONVERTERS.get(sourceClass);
+        ValueConverter converter = byExpected.get(expectedClass);
+        if (converter == null) {
+            converter = createConverter(sourceClass, expectedClass);
+            ValueConverter existing = byExpected.putIfAbsent(expectedClass, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
+    }
+
+    /**
+     * Convert a single value, prefer holding on to the converter when converting many values
+     */
+    public static Object convert(Object value, Class<?> expectedClass) throws TranslatorException {
+        if (value == null) {
+            return null;
+        }
+        return getConverter(value.getClass(), expectedClass).convert(value);
+    }
+
+    private static ValueConverter createConverter(Class<?> sourceClass, Class<?> expectedClass) {
+        if (sourceClass.equals(expectedClass)) {
+            return IDENTITY;
+        }
+        if (java.util.Date.class.isAssignableFrom(sourceClass)) {
+            if (expectedClass.equals(java.sql.Date.class)) {
+                return value -> new java.sql.Date(((java.util.Date) value).getTime());
+            } else if (expectedClass.equals(java.sql.Timestamp.class)) {
+                return value -> new java.sql.Timestamp(((java.util.Date) value).getTime());
+            } else if (expectedClass.equals(java.sql.Time.class)) {
+                return value -> new java.sql.Time(((java.util.Date) value).getTime());
+            }
+        }
+        if (sourceClass.equals(String.class) && expectedClass.equals(Character.class)) {
+            return value -> Character.valueOf(((String)value).charAt(0));
+        }
+        if (sourceClass.equals(ObjectName.class) && expectedClass.equals(String.class)) {
+            return value -> ((ObjectName)value).getCanonicalName();
+        }
+        if (sourceClass.isArray()) {
+            Class<?> componentType = sourceClass.getComponentType();
+            if (componentType.equals(CompositeData.class) || componentType.equals(TabularData.class)) {
+                return JSON;
+            }
+            if (expectedClass.isArray()) {
+                return createArrayConverter(componentType, expectedClass.getComponentType());
+            }
+        }
+        if ((CompositeData.class.isAssignableFrom(sourceClass) || TabularData.class.isAssignableFrom(sourceClass))
+                && expectedClass.equals(JsonType.class)) {
+            return JSON;
+        }
+        final Transform transform = DataTypeManager.getTransform(sourceClass, expectedClass);
+        if (transform == null) {
+            return IDENTITY;
+        }
+        return value -> {
+            try {
+                return transform.transform(value, expectedClass);
+            } catch (TransformationException e) {
+                throw new TranslatorException(e);
+            }
+        };
+    }
+
+    private static ValueConverter createArrayConverter(Class<?> componentType, Class<?> expectedComponent) {
+        if (componentType == long.class && expectedComponent == Long.class) {
+            return value -> {
+                long[] source = (long[])value;
+                Long[] result = new Long[source.length];
+                for (int i = 0; i < source.length; i++) {
+                    result[i] = source[i];
+                }
+                return result;
+            };
+        }
+        if (componentType == int.class && expectedComponent == Integer.class) {
+            return value -> {
+                int[] source = (int[])value;
+                Integer[] result = new Integer[source.length];
+                for (int i = 0; i < source.length; i++) {
+                    result[i] = source[i];
+                }
+                return result;
+            };
+        }
+        if (componentType == double.class && expectedComponent == Double.class) {
+            return value -> {
+                double[] source = (double[])value;
+                Double[] result = new Double[source.length];
+                for (int i = 0; i < source.length; i++) {
+                    result[i] = source[i];
+                }
+                return result;
+            };
+        }
+        if (componentType == boolean.class && expectedComponent == Boolean.class) {
+            return value -> {
+                boolean[] source = (boolean[])value;
+                Boolean[] result = new Boolean[source.length];
+                for (int i = 0; i < source.length; i++) {
+                    result[i] = source[i];
+                }
+                return result;
+            };
+        }
+        if (!componentType.isPrimitive()) {
+            // the elements may be of any subtype, so resolve per element class
+            return value -> {
+                Object[] source = (Object[])value;
+                Object[] result = (Object[])Array.newInstance(expectedComponent, source.length);
+                Class<?> last = null;
+                ValueConverter converter = null;
+                for (int i = 0; i < source.length; i++) {
+                    Object element = source[i];
+                    if (element == null) {
+                        continue;
+                    }
+                    if (element.getClass() != last) {
+                        last = element.getClass();
+                        converter = getConverter(last, expectedComponent);
+                    }
+                    result[i] = converter.convert(element);
+                }
+                return result;
+            };
+        }
+        // remaining primitive arrays, such as byte[] or float[], are rare
+        final ValueConverter elementConverter = getConverter(
+                Array.get(Array.newInstance(componentType, 1), 0).getClass(), expectedComponent);
+        return value -> {
+            int length = Array.getLength(value);
+            Object result = Array.newInstance(expectedComponent, length);
+            for (int i = 0; i < length; i++) {
+                Array.set(result, i, elementConverter.convert(Array.get(value, i)));
+            }
+            return result;
+        };
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual threads of Java 21 and later, while still running on Java 8.
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_EXECUTOR = find(java.util.concurrent.Executors.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return the newVirtualThreadPerTaskExecutor method of the Executors class, or null before Java 21
+     */
+    static Method find(Class<?> executors) {
+        try {
+            return executors.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException | SecurityException e) {
+            // before Java 21
+            return null;
+        }
+    }
+
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * @return an executor that starts a virtual thread per task, or null if virtual threads are not supported
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        return newExecutor(NEW_EXECUTOR);
+    }
+
+    /**
+     * @return a factory of virtual threads named prefix-1, prefix-2 and so on, or null if virtual threads
+     * are not supported
+     */
+    public static ThreadFactory newThreadFactory(String prefix) {
+        if (NEW_EXECUTOR == null) {
+            return null;
+        }
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = Class.forName("java.lang.Thread$Builder$OfVirtual").getMethod("name", String.class, long.class)
+                    .invoke(builder, prefix + "-", 1L);
+            return (ThreadFactory)Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    static ExecutorService newExecutor(Method newExecutor) {
+        if (newExecutor == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService)newExecutor.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
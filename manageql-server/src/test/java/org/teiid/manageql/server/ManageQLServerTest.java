@@ -18,22 +18,44 @@
 package org.teiid.manageql.server;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
 
 import org.jdbi.v3.core.ConnectionFactory;
 import org.jdbi.v3.core.Jdbi;
 import org.jdbi.v3.core.result.ResultIterable;
+import org.jdbi.v3.core.statement.UnableToExecuteStatementException;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.teiid.manageql.server.jmx.NotificationCollectorTest;
+import org.teiid.manageql.server.jmx.VirtualThreads;
 
 import com.google.gson.Gson;
 
@@ -41,6 +63,76 @@ import com.google.gson.Gson;
  * Unit test for simple App.
  */
 public class ManageQLServerTest {
+
+    public interface CounterMBean {
+        long getCount();
+    }
+
+    public static class Counter implements CounterMBean {
+        @Override
+        public long getCount() {
+            return 42;
+        }
+    }
+
+    public interface GaugeMBean {
+        long getLevel();
+    }
+
+    public static class Gauge implements GaugeMBean {
+        private final long level;
+
+        public Gauge(long level) {
+            this.level = level;
+        }
+
+        @Override
+        public long getLevel() {
+            return level;
+        }
+    }
+
+    public interface CallerMBean {
+        String getThread();
+    }
+
+    public static class Caller implements CallerMBean {
+        @Override
+        public String getThread() {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    public interface SlowMBean {
+        long getFast();
+
+        long getOther();
+
+        long getSlow();
+    }
+
+    public static class Slow implements SlowMBean {
+        @Override
+        public long getFast() {
+            return 1;
+        }
+
+        @Override
+        public long getOther() {
+            return 3;
+        }
+
+        @Override
+        public long getSlow() {
+            try {
+                Thread.sleep(2000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return 2;
+        }
+    }
+
     ManageQLServer server;
     Jdbi dbi;
 
@@ -86,6 +178,572 @@ public class ManageQLServerTest {
         assertTrue(objectNames.contains("java.lang:type=Runtime"));
     }
 
+    @Test
+    public void canFilterObjectNamePattern() throws SQLException {
+        List<String> objectNames = dbi.withHandle(db ->
+                db.createQuery("SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\" WHERE \"$ObjectName\" LIKE '%type=Runtime%'")
+                        .mapTo(String.class).list());
+        assertEquals(Arrays.asList("java.lang:type=Runtime"), objectNames);
+    }
+
+    @Test
+    public void canFilterOnKeyProperty() throws SQLException {
+        List<String> objectNames = dbi.withHandle(db ->
+                db.createQuery("SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\" WHERE \"$type\" = 'Threading'")
+                        .mapTo(String.class).list());
+        assertEquals(Arrays.asList("java.lang:type=Threading"), objectNames);
+    }
+
+    @Test
+    public void preParsesOnlyPatternReferences() throws SQLException {
+        // a statement with a colon but no pattern table, like the casts of the pg catalog queries
+        assertEquals("a:b", dbi.withHandle(db -> db.createQuery("SELECT 'a:b'").mapTo(String.class).findOnly()));
+        // the schema prefix is matched in any case
+        HashSet<String> objectNames = new HashSet<>(dbi.withHandle(db ->
+                db.createQuery("SELECT \"$ObjectName\" FROM \"JMX.java.lang:*\"").mapTo(String.class).list()));
+        assertTrue(objectNames.contains("java.lang:type=Runtime"));
+    }
+
+    @Test
+    public void rebuildsPatternTableOnRegistration() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("manageql.test:type=Counter");
+        dbi.useHandle(db -> {
+            assertEquals(Arrays.asList("java.lang:type=Runtime"), db.createQuery(
+                    "SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\" WHERE \"$type\" = 'Runtime'").mapTo(String.class).list());
+            assertEquals(0, db.createQuery("SELECT count(*) FROM \"jmx.manageql.test:*\"").mapTo(Integer.class).findOnly().intValue());
+            mbs.registerMBean(new Counter(), name);
+            try {
+                assertEquals(42L, db.createQuery("SELECT \"Count\" FROM \"jmx.manageql.test:*\"").mapTo(Long.class).findOnly().longValue());
+            } finally {
+                mbs.unregisterMBean(name);
+            }
+        });
+    }
+
+    @Test
+    public void canOrderAndLimit() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        long[] levels = {5, 3, 9, 1, 7};
+        for (int i = 0; i < levels.length; i++) {
+            mbs.registerMBean(new Gauge(levels[i]), new ObjectName("manageql.test:type=Gauge,name=g" + i));
+        }
+        try {
+            dbi.useHandle(db -> {
+                List<String> names = db.createQuery("SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\"")
+                        .mapTo(String.class).list();
+                names.sort(null);
+                assertEquals(names.subList(1, 3), db.createQuery(
+                        "SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\" ORDER BY \"$ObjectName\" LIMIT 1, 2")
+                        .mapTo(String.class).list());
+                assertEquals(names.get(names.size() - 1), db.createQuery(
+                        "SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\" ORDER BY \"$ObjectName\" DESC LIMIT 1")
+                        .mapTo(String.class).findOnly());
+
+                // only the beans within the limit are read
+                long reads = server.getMetrics().getGetAttributesLatency().getCount();
+                assertEquals(Arrays.asList("g0", "g1"), db.createQuery(
+                        "SELECT \"$name\", \"Level\" FROM \"jmx.manageql.test:type=Gauge,*\" ORDER BY \"$ObjectName\" LIMIT 2")
+                        .mapTo(String.class).list());
+                assertEquals(2, server.getMetrics().getGetAttributesLatency().getCount() - reads);
+
+                assertEquals(Arrays.asList(9L, 7L), db.createQuery(
+                        "SELECT \"Level\" FROM \"jmx.manageql.test:type=Gauge,*\" ORDER BY \"Level\" DESC LIMIT 2")
+                        .mapTo(Long.class).list());
+                assertEquals(Arrays.asList("g1", "g0"), db.createQuery(
+                        "SELECT \"$name\" AS n, \"Level\" FROM \"jmx.manageql.test:type=Gauge,*\" ORDER BY \"Level\" LIMIT 1, 2")
+                        .mapTo(String.class).list());
+                assertEquals(3, db.createQuery("SELECT \"Level\" FROM \"jmx.manageql.test:type=Gauge,*\" LIMIT 3")
+                        .mapTo(Long.class).list().size());
+            });
+        } finally {
+            for (int i = 0; i < levels.length; i++) {
+                mbs.unregisterMBean(new ObjectName("manageql.test:type=Gauge,name=g" + i));
+            }
+        }
+    }
+
+    @Test
+    public void canSelectWithLazyMetadata() throws SQLException {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.start();
+        assertFalse(server.tableExists("jmx.java.lang:type=Runtime"));
+
+        String specName = dbi.withHandle(db ->
+                db.createQuery("SELECT SpecName FROM \"jmx.java.lang:type=Runtime\"").mapTo(String.class).findOnly());
+        assertEquals("Java Virtual Machine Specification", specName);
+    }
+
+    @Test
+    public void canSelectWithGroupedTables() throws SQLException {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setGroupedTables(true);
+        server.start();
+        assertTrue(server.tableExists("jmx.java.lang:type=MemoryPool,*"));
+        assertFalse(server.tableExists("jmx.java.lang:type=Runtime"));
+
+        dbi.useHandle(db -> {
+            assertEquals("NON_HEAP", db.createQuery(
+                    "SELECT Type FROM \"jmx.java.lang:type=MemoryPool,*\" WHERE \"$name\" = 'Metaspace'")
+                    .mapTo(String.class).findOnly());
+            assertEquals("Java Virtual Machine Specification", db.createQuery(
+                    "SELECT SpecName FROM \"jmx.java.lang:type=Runtime,*\"").mapTo(String.class).findOnly());
+            // the table of a single MBean is still defined as it is referenced
+            assertEquals("Java Virtual Machine Specification", db.createQuery(
+                    "SELECT SpecName FROM \"jmx.java.lang:type=Runtime\"").mapTo(String.class).findOnly());
+        });
+    }
+
+    @Test
+    public void updatesTablesOnRegistration() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setSchemaUpdateWindow(1000);
+        server.start();
+        long updates = server.getSchemaUpdater().getUpdates();
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        int count = 100;
+        for (int i = 0; i < count; i++) {
+            mbs.registerMBean(new Gauge(i), new ObjectName("manageql.test:type=Gauge,name=g" + i));
+        }
+        try {
+            // the counter is incremented once the tables are published
+            for (int i = 0; i < 50 && server.getSchemaUpdater().getUpdates() == updates; i++) {
+                Thread.sleep(100);
+            }
+            // the burst of registrations is a single update
+            assertEquals(updates + 1, server.getSchemaUpdater().getUpdates());
+            assertTrue(server.tableExists("jmx.manageql.test:type=Gauge,name=g" + (count - 1)));
+            dbi.useHandle(db -> {
+                assertEquals(count, db.createQuery("SELECT count(*) FROM SYS.Tables WHERE SchemaName = 'jmx' "
+                        + "AND Name LIKE 'manageql.test:type=Gauge,%'").mapTo(Integer.class).findOnly().intValue());
+                assertEquals(7L, db.createQuery("SELECT \"Level\" FROM \"jmx.manageql.test:type=Gauge,name=g7\"")
+                        .mapTo(Long.class).findOnly().longValue());
+            });
+        } finally {
+            for (int i = 0; i < count; i++) {
+                mbs.unregisterMBean(new ObjectName("manageql.test:type=Gauge,name=g" + i));
+            }
+        }
+        for (int i = 0; i < 50 && server.getSchemaUpdater().getUpdates() == updates + 1; i++) {
+            Thread.sleep(100);
+        }
+        assertEquals(updates + 2, server.getSchemaUpdater().getUpdates());
+        assertFalse(server.tableExists("jmx.manageql.test:type=Gauge,name=g0"));
+    }
+
+    @Test
+    public void queriesSystemTablesDuringUpdates() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setSchemaUpdateWindow(1);
+        server.start();
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                try {
+                    while (!done.get()) {
+                        dbi.useHandle(db -> db.createQuery("SELECT count(*) FROM SYS.Columns WHERE SchemaName = 'jmx'")
+                                .mapTo(Integer.class).findOnly());
+                    }
+                } catch (Throwable e) {
+                    failure.set(e);
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        try {
+            for (int i = 0; i < 500 && failure.get() == null; i++) {
+                ObjectName name = new ObjectName("manageql.test:type=Gauge,name=u" + i);
+                mbs.registerMBean(new Gauge(i), name);
+                Thread.sleep(1);
+                mbs.unregisterMBean(name);
+            }
+        } finally {
+            done.set(true);
+            for (Thread reader : readers) {
+                reader.join();
+            }
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void isolatesSlowAttributes() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.setAttributeTimeout(200);
+        server.start();
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("manageql.test:type=Slow");
+        mbs.registerMBean(new Slow(), name);
+        try {
+            for (String sql : new String[] {"SELECT Fast, Slow FROM \"jmx.manageql.test:type=Slow\"",
+                    "SELECT Fast, Slow FROM \"jmx.manageql.test:type=Slow\"",
+                    "SELECT * FROM \"jmx.manageql.test:type=Slow\""}) {
+                long start = System.nanoTime();
+                Map<String, Object> row = dbi.withHandle(db -> db.createQuery(sql).mapToMap().findOnly());
+                long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("took " + elapsed + " ms", elapsed < 1500);
+                assertEquals(sql, 1L, ((Number)row.get("fast")).longValue());
+                assertEquals(sql, null, row.get("slow"));
+            }
+            // the slow attribute is found by the first query, then read on its own, and not read by the SELECT *
+            assertEquals(2, server.getMetrics().getAttributeTimeouts());
+        } finally {
+            mbs.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void canSelectPlatformTables() throws Exception {
+        dbi.useHandle(db -> {
+            List<Map<String, Object>> pools = db.createQuery("SELECT name, usage_used, usage_max "
+                    + "FROM jmx.jmx_memory_pools WHERE type = 'HEAP' ORDER BY usage_used DESC").mapToMap().list();
+            assertFalse(pools.isEmpty());
+            assertTrue(pools.get(0).get("usage_used") instanceof Long);
+            assertTrue((Long)pools.get(0).get("usage_used") > 0);
+
+            assertEquals(Arrays.asList("HEAP"), db.createQuery(
+                    "SELECT area FROM jmx.jmx_memory WHERE usage_used > 0 ORDER BY area LIMIT 1")
+                    .mapTo(String.class).list());
+            assertTrue(db.createQuery("SELECT thread_count FROM jmx.jmx_threading")
+                    .mapTo(Integer.class).findOnly() > 0);
+
+            List<String> collectors = new ArrayList<>();
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collectors.add(gc.getName());
+            }
+            assertEquals(new HashSet<>(collectors), new HashSet<>(db.createQuery(
+                    "SELECT name FROM jmx.jmx_garbage_collectors").mapTo(String.class).list()));
+        });
+    }
+
+    @Test
+    public void canSelectThreads() throws Exception {
+        Object lock = new Object();
+        Thread blocked = new Thread(() -> {
+            synchronized (lock) {
+                lock.notifyAll();
+            }
+        }, "manageql-test-blocked");
+        blocked.setDaemon(true);
+        synchronized (lock) {
+            blocked.start();
+            while (blocked.getState() != Thread.State.BLOCKED) {
+                Thread.sleep(10);
+            }
+            long id = blocked.getId();
+            String owner = Thread.currentThread().getName();
+            dbi.useHandle(db -> {
+                Map<String, Object> row = db.createQuery("SELECT thread_id, state, lock_owner_name FROM jmx.jmx_threads "
+                        + "WHERE name = 'manageql-test-blocked'").mapToMap().findOnly();
+                assertEquals(id, row.get("thread_id"));
+                assertEquals("BLOCKED", row.get("state"));
+                assertEquals(owner, row.get("lock_owner_name"));
+
+                List<Integer> depths = db.createQuery("SELECT depth FROM jmx.jmx_thread_frames WHERE thread_id = "
+                        + id + " AND depth < 2 ORDER BY depth").mapTo(Integer.class).list();
+                assertEquals(Arrays.asList(0, 1), depths);
+
+                String monitors = db.createQuery("SELECT locked_monitors FROM jmx.jmx_threads WHERE thread_id = "
+                        + Thread.currentThread().getId()).mapTo(String.class).findOnly();
+                assertTrue(monitors, monitors.contains(Integer.toHexString(System.identityHashCode(lock))));
+
+                assertEquals(1, db.createQuery("SELECT count(*) FROM jmx.jmx_threads t, jmx.jmx_thread_frames f "
+                        + "WHERE t.thread_id = f.thread_id AND t.name = 'manageql-test-blocked' AND f.depth = 0")
+                        .mapTo(Integer.class).findOnly().intValue());
+            });
+        }
+        blocked.join();
+    }
+
+    @Test
+    public void ignoresInvalidThreadIds() throws Exception {
+        long id = Thread.currentThread().getId();
+        dbi.useHandle(db -> {
+            assertEquals(0, db.createQuery("SELECT count(*) FROM jmx.jmx_threads WHERE thread_id = 0")
+                    .mapTo(Integer.class).findOnly().intValue());
+            assertEquals(0, db.createQuery("SELECT count(*) FROM jmx.jmx_thread_frames WHERE thread_id = 0")
+                    .mapTo(Integer.class).findOnly().intValue());
+            assertEquals(Arrays.asList(id), db.createQuery("SELECT thread_id FROM jmx.jmx_threads "
+                    + "WHERE thread_id IN (-1, " + id + ")").mapTo(Long.class).list());
+        });
+    }
+
+    @Test
+    public void ordersThreadsById() throws Exception {
+        long id = Thread.currentThread().getId();
+        dbi.useHandle(db -> {
+            List<Map<String, Object>> rows = db.createQuery("SELECT thread_id, depth FROM jmx.jmx_thread_frames "
+                    + "WHERE depth < 3 ORDER BY thread_id, depth").mapToMap().list();
+            for (int i = 1; i < rows.size(); i++) {
+                long previous = (Long)rows.get(i - 1).get("thread_id");
+                long current = (Long)rows.get(i).get("thread_id");
+                assertTrue(previous < current || (previous == current
+                        && (Integer)rows.get(i - 1).get("depth") < (Integer)rows.get(i).get("depth")));
+            }
+            assertEquals(Arrays.asList(id), db.createQuery("SELECT thread_id FROM jmx.jmx_threads "
+                    + "WHERE thread_id IN (" + id + ", " + id + ")").mapTo(Long.class).list());
+        });
+    }
+
+    @Test
+    public void canSelectHistory() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setHistory("java.lang:type=Threading@ThreadCount;java.lang:type=Memory@HeapMemoryUsage.used");
+        server.setHistoryInterval(60000);
+        server.start();
+
+        String sql = "SELECT attribute, sample_value FROM jmx.jmx_history WHERE ts > {ts'2000-01-01 00:00:00'} "
+                + "AND object_name LIKE 'java.lang:%' ORDER BY attribute";
+        List<Map<String, Object>> rows = null;
+        for (int i = 0; i < 50; i++) {
+            rows = dbi.withHandle(db -> db.createQuery(sql).mapToMap().list());
+            if (rows.size() == 2) {
+                break;
+            }
+            Thread.sleep(100);
+        }
+        assertEquals(2, rows.size());
+        assertEquals("HeapMemoryUsage.used", rows.get(0).get("attribute"));
+        assertTrue(((Number)rows.get(0).get("sample_value")).doubleValue() > 0);
+        assertEquals("ThreadCount", rows.get(1).get("attribute"));
+    }
+
+    @Test
+    public void canSelectNotifications() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setNotifications("manageql.test:*");
+        server.start();
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName("manageql.test:type=Emitter");
+        NotificationCollectorTest.Emitter emitter = new NotificationCollectorTest.Emitter();
+        mbs.registerMBean(emitter, name);
+        try {
+            emitter.emit("first");
+            emitter.emit("second");
+            List<String> messages = dbi.withHandle(db -> db.createQuery(
+                    "SELECT message FROM jmx.jmx_notifications WHERE seq > 0 AND object_name = 'manageql.test:type=Emitter'")
+                    .mapTo(String.class).list());
+            assertEquals(Arrays.asList("second"), messages);
+        } finally {
+            mbs.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void canQueryManyNodes() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        // a node that takes too long to read attributes
+        MBeanServerConnection slow = (MBeanServerConnection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getAttributes")) {
+                        Thread.sleep(2000);
+                    }
+                    try {
+                        return method.invoke(mbs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.addMBeanServerConnection("a", mbs);
+        server.addMBeanServerConnection("b", mbs);
+        server.addMBeanServerConnection("slow", slow);
+        server.setNodeTimeout(500);
+        server.start();
+
+        List<String> nodes = dbi.withHandle(db -> db.createQuery(
+                "SELECT \"$Node\" FROM \"jmx.java.lang:type=Runtime\" ORDER BY \"$Node\"").mapTo(String.class).list());
+        assertEquals(Arrays.asList("a", "b"), nodes);
+
+        nodes = dbi.withHandle(db -> db.createQuery(
+                "SELECT \"$Node\" FROM \"jmx.java.lang:type=Runtime\" WHERE \"$Node\" = 'b'").mapTo(String.class).list());
+        assertEquals(Arrays.asList("b"), nodes);
+    }
+
+    @Test
+    public void virtualThreadsReachFetchAndNodeExecutors() throws Exception {
+        // without fetch threads a node task reads the attributes itself
+        for (String thread : readingThreads(0)) {
+            assertEquals(thread, VirtualThreads.isSupported(), !thread.startsWith("manageql-node-"));
+        }
+        for (String thread : readingThreads(2)) {
+            assertEquals(thread, VirtualThreads.isSupported(), !thread.startsWith("manageql-fetch-"));
+        }
+    }
+
+    /**
+     * @return the names of the threads reading an attribute on two nodes, with virtual threads requested
+     */
+    private List<String> readingThreads(int fetchThreads) throws Exception {
+        MBeanServer mbs = MBeanServerFactory.newMBeanServer();
+        mbs.registerMBean(new Caller(), new ObjectName("manageql.test:type=Caller"));
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.addMBeanServerConnection("a", mbs);
+        server.addMBeanServerConnection("b", mbs);
+        server.setFetchThreads(fetchThreads);
+        server.setVirtualThreads(true);
+        server.start();
+        List<String> threads = dbi.withHandle(db -> db.createQuery(
+                "SELECT Thread FROM \"jmx.manageql.test:type=Caller\"").mapTo(String.class).list());
+        assertEquals(2, threads.size());
+        return threads;
+    }
+
+    @Test
+    public void servesManyClientsConcurrently() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        // a remote node that takes a while to read attributes
+        MBeanServerConnection slow = (MBeanServerConnection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getAttributes")) {
+                        Thread.sleep(200);
+                    }
+                    try {
+                        return method.invoke(mbs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setLazyMetadata(true);
+        server.setMBeanServerConnection(slow);
+        server.setFetchThreads(50);
+        int clients = 50;
+        // far fewer engine threads than clients, with every query active at once
+        int engineThreads = 2;
+        server.setMaxThreads(engineThreads);
+        server.setMaxActivePlans(clients);
+        server.start();
+
+        String sql = "SELECT SpecName FROM \"jmx.java.lang:type=Runtime\"";
+        // defines the table, so that only the reads are timed
+        dbi.useHandle(db -> db.createQuery(sql).mapTo(String.class).findOnly());
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            long start = System.nanoTime();
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> dbi.withHandle(db -> db.createQuery(sql).mapTo(String.class).findOnly())));
+            }
+            for (Future<String> result : results) {
+                assertEquals("Java Virtual Machine Specification", result.get());
+            }
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // an engine thread blocked for each query would take at least 50 * 200 / 2 ms
+            assertTrue("took " + elapsed + " ms", elapsed < clients * 200 / engineThreads / 2);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void canSelectMetrics() throws Exception {
+        dbi.useHandle(db -> {
+            assertEquals(1, db.createQuery("SELECT count(*) FROM \"jmx.java.lang:type=Runtime\"")
+                    .mapTo(Integer.class).findOnly().intValue());
+            Map<String, Object> metrics = db.createQuery("SELECT QueriesExecuted, RowsReturned "
+                    + "FROM \"jmx.org.teiid.manageql:type=Metrics\"").mapToMap().findOnly();
+            assertTrue(((Number)metrics.get("queriesexecuted")).longValue() >= 1);
+            assertTrue(((Number)metrics.get("rowsreturned")).longValue() >= 1);
+            String tables = db.createQuery("SELECT Tables FROM \"jmx.org.teiid.manageql:type=Metrics\"")
+                    .mapTo(String.class).findOnly();
+            assertTrue(tables, tables.contains("\"queries\":1"));
+        });
+        assertTrue(server.getMetrics().getGetAttributesLatency().getCount() >= 1);
+        assertTrue(server.getMetrics().getPreParseLatency().getCount() >= 2);
+    }
+
+    @Test
+    public void canSelectMetricsTableOfGateway() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        // a remote node does not have the metrics bean
+        server.setMBeanServerConnection(MBeanServerFactory.newMBeanServer());
+        server.start();
+        dbi.useHandle(db -> {
+            assertFalse(server.tableExists("jmx.org.teiid.manageql:type=Metrics"));
+            assertEquals(1, db.createQuery("SELECT count(*) FROM \"jmx.JMImplementation:type=MBeanServerDelegate\"")
+                    .mapTo(Integer.class).findOnly().intValue());
+            assertTrue(db.createQuery("SELECT metric_value FROM jmx.jmx_metrics "
+                    + "WHERE metric = 'QueriesExecuted' AND table_name IS NULL").mapTo(Long.class).findOnly() >= 1);
+            Map<String, Object> latency = db.createQuery("SELECT metric_value, p99_micros FROM jmx.jmx_metrics "
+                    + "WHERE metric = 'QueryLatency' AND table_name = 'JMImplementation:type=MBeanServerDelegate'")
+                    .mapToMap().findOnly();
+            assertEquals(1L, latency.get("metric_value"));
+            assertTrue(((Number)latency.get("p99_micros")).doubleValue() > 0);
+        });
+    }
+
+    @Test
+    public void governorRejectsLargeQueries() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setMaxBeansPerQuery(1);
+        server.start();
+
+        assertEquals(Arrays.asList("java.lang:type=Runtime"), dbi.withHandle(db -> db.createQuery(
+                "SELECT \"$ObjectName\" FROM \"jmx.java.lang:type=Runtime\"").mapTo(String.class).list()));
+        try {
+            dbi.withHandle(db -> db.createQuery("SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\"")
+                    .mapTo(String.class).list());
+            fail();
+        } catch (UnableToExecuteStatementException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("more than the limit of 1"));
+        }
+        assertEquals(1, server.getMetrics().getGovernorRejected());
+    }
+
+    @Test
+    public void governorThrottlesPatternTable() throws Exception {
+        server.stop();
+        server = new ManageQLServer();
+        server.setPsqlPortNumber(0);
+        server.setMaxCallsPerSecond(10);
+        server.setLazyMetadata(true);
+        server.start();
+
+        // the MBeanInfo read to define the pattern table and the attributes of its rows are more than the burst
+        HashSet<String> objectNames = new HashSet<>(dbi.withHandle(db ->
+                db.createQuery("SELECT \"$ObjectName\" FROM \"jmx.java.lang:*\"").mapTo(String.class).list()));
+        assertTrue(objectNames.contains("java.lang:type=Runtime"));
+        assertTrue(objectNames.size() > 10);
+        assertTrue(server.getMetrics().getGovernorThrottled() > 0);
+    }
+
     @Test
     public void canSelectArrayAttribute() throws SQLException, InterruptedException {
         String[] value = dbi.withHandle(db ->
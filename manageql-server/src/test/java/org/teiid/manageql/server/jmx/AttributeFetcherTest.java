@@ -0,0 +1,151 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.teiid.translator.DataNotAvailableException;
+
+public class AttributeFetcherTest {
+
+    @Test
+    public void testConcurrentFetchKeepsOrder() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        List<ObjectName> names = new ArrayList<ObjectName>(mbs.queryNames(new ObjectName("java.lang:*"), null));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            AttributeFetcher fetcher = new AttributeFetcher(mbs, names.iterator(), new String[] {"ObjectName"},
+                    executor, 3);
+            for (ObjectName name : names) {
+                AttributeFetcher.FetchedBean bean = fetcher.next();
+                assertEquals(name, bean.getName());
+                assertEquals(name, ((Attribute)bean.getAttributes().get(0)).getValue());
+            }
+            assertNull(fetcher.next());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testChargesEachCall() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        List<ObjectName> names = new ArrayList<ObjectName>(mbs.queryNames(new ObjectName("java.lang:*"), null));
+        String[] attributes = new String[] {"ObjectName"};
+        CountingGovernor governor = new CountingGovernor();
+        AttributeFetcher fetcher = new AttributeFetcher(mbs, names.iterator(), attributes, null, 1);
+        fetcher.setGovernor(governor, false);
+        while (fetcher.next() != null) {
+        }
+        assertNull(fetcher.next());
+        assertEquals(names.size(), governor.calls.get());
+
+        governor = new CountingGovernor();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            fetcher = new AttributeFetcher(mbs, names.iterator(), attributes, executor, 3);
+            fetcher.setGovernor(governor, false);
+            while (fetcher.next() != null) {
+            }
+            assertEquals(names.size(), governor.calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // a second's worth of calls, so the next is throttled
+        governor = new CountingGovernor();
+        governor.setMaxCallsPerSecond(1);
+        fetcher = new AttributeFetcher(mbs, names.iterator(), attributes, null, 1);
+        fetcher.setGovernor(governor, false);
+        assertNotNull(fetcher.next());
+        try {
+            fetcher.next();
+            fail();
+        } catch (DataNotAvailableException e) {
+            assertEquals(1, governor.getThrottled());
+        }
+    }
+
+    static class CountingGovernor extends QueryGovernor {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public long tryAcquire() {
+            this.calls.incrementAndGet();
+            return super.tryAcquire();
+        }
+    }
+
+    @Test
+    public void testTimeoutBoundsRetries() throws Exception {
+        // a getter of B that outlasts the timeout, whether read with A or alone
+        MBeanServerConnection connection = (MBeanServerConnection)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getAttributes")) {
+                        Thread.sleep(2000);
+                    } else if (method.getName().equals("getAttribute")) {
+                        if (args[1].equals("B")) {
+                            Thread.sleep(2000);
+                        }
+                        return 1L;
+                    }
+                    return new AttributeList();
+                });
+        ObjectName name = new ObjectName("manageql.test:type=Slow");
+        ExecutorService attributeExecutor = Executors.newCachedThreadPool();
+        List<String> warnings = new CopyOnWriteArrayList<String>();
+        try {
+            AttributeFetcher fetcher = new AttributeFetcher(connection, Collections.singletonList(name).iterator(),
+                    new String[] {"A", "B"}, null, 0);
+            fetcher.setAttributeTimeout(400, attributeExecutor, new SlowAttributes(), "local", "Slow", false,
+                    warnings::add);
+            long start = System.nanoTime();
+            AttributeFetcher.FetchedBean bean = fetcher.next();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            // the attributes are read again on their own within the timeout, rather than a timeout after it
+            assertTrue("took " + elapsed + " ms", elapsed < 700);
+            assertEquals(Arrays.asList(new Attribute("A", 1L)), bean.getAttributes().asList());
+            assertEquals(1, warnings.size());
+        } finally {
+            attributeExecutor.shutdownNow();
+        }
+    }
+}
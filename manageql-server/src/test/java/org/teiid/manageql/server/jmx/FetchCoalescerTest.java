@@ -0,0 +1,136 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.AttributeList;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class FetchCoalescerTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private MBeanServerConnection gatedConnection() {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        return (MBeanServerConnection)Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getAttributes")) {
+                        calls.incrementAndGet();
+                        release.await();
+                    }
+                    try {
+                        return method.invoke(mbs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    @Test
+    public void testSharesCallInFlight() throws Exception {
+        MBeanServerConnection mbsc = gatedConnection();
+        FetchCoalescer coalescer = new FetchCoalescer();
+        ObjectName name = new ObjectName("java.lang:type=Runtime");
+        String[] attributes = {"SpecName", "Uptime"};
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AttributeList>> results = new ArrayList<Future<AttributeList>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> coalescer.getAttributes(mbsc, name, attributes.clone())));
+            }
+            while (coalescer.getHits() < 3) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            AttributeList first = results.get(0).get();
+            for (Future<AttributeList> result : results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, calls.get());
+            assertEquals(4, coalescer.getRequests());
+
+            // nothing in flight and no window
+            coalescer.getAttributes(mbsc, name, attributes);
+            assertEquals(2, calls.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReusesWithinWindow() throws Exception {
+        release.countDown();
+        MBeanServerConnection mbsc = gatedConnection();
+        FetchCoalescer coalescer = new FetchCoalescer();
+        coalescer.setWindow(60000);
+        ObjectName name = new ObjectName("java.lang:type=Runtime");
+        AttributeList first = coalescer.getAttributes(mbsc, name, new String[] {"SpecName"});
+        assertSame(first, coalescer.getAttributes(mbsc, name, new String[] {"SpecName"}));
+        coalescer.getAttributes(mbsc, name, new String[] {"Uptime"});
+        assertEquals(2, calls.get());
+        assertEquals(1, coalescer.getHits());
+    }
+
+    @Test
+    public void testRetriesAfterInterruptedCall() throws Exception {
+        MBeanServerConnection mbsc = gatedConnection();
+        FetchCoalescer coalescer = new FetchCoalescer();
+        ObjectName name = new ObjectName("java.lang:type=Runtime");
+        String[] attributes = {"SpecName"};
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<AttributeList> issued = executor.submit(() -> coalescer.getAttributes(mbsc, name, attributes));
+            while (calls.get() < 1) {
+                Thread.sleep(10);
+            }
+            Future<AttributeList> joined = executor.submit(() -> coalescer.getAttributes(mbsc, name, attributes));
+            while (coalescer.getHits() < 1) {
+                Thread.sleep(10);
+            }
+            // the execution that issued the call is cancelled
+            issued.cancel(true);
+            for (int i = 0; i < 500 && calls.get() < 2 && !joined.isDone(); i++) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            assertEquals(1, joined.get().size());
+            assertEquals(2, calls.get());
+            assertEquals(0, coalescer.getHits());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
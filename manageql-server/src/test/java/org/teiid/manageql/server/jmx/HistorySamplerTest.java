@@ -0,0 +1,54 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class HistorySamplerTest {
+
+    @Test
+    public void testRingBufferRange() throws Exception {
+        HistorySampler sampler = new HistorySampler(
+                Arrays.asList(new JmxNode(JmxNode.LOCAL, ManagementFactory.getPlatformMBeanServer())),
+                HistorySampler.parse("java.lang:type=Threading@ThreadCount"), 1000, 4);
+        for (int i = 1; i <= 6; i++) {
+            sampler.record(i * 10, "node", Arrays.asList("a:x=y"), Arrays.asList("v"), Arrays.asList((double)i));
+        }
+        assertEquals(4, sampler.size());
+
+        List<HistorySampler.Sample> samples = sampler.getSamples(Long.MIN_VALUE, Long.MAX_VALUE);
+        assertEquals(4, samples.size());
+        assertEquals(30, samples.get(0).getTime());
+
+        samples = sampler.getSamples(35, 50);
+        assertEquals(2, samples.size());
+        assertEquals(4, samples.get(0).getValue(), 0);
+        assertEquals(5, samples.get(1).getValue(), 0);
+
+        sampler.sample();
+        assertEquals(4, sampler.size());
+        assertEquals("ThreadCount", sampler.getSamples(61, Long.MAX_VALUE).get(0).getAttribute());
+    }
+
+}
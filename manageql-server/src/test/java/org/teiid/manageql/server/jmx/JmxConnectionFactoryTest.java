@@ -0,0 +1,92 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class JmxConnectionFactoryTest {
+
+    @Test
+    public void testStuckGettersAreBounded() throws Exception {
+        readPastStuckGetters(false);
+    }
+
+    @Test
+    public void testStuckGettersAreBoundedOnVirtualThreads() throws Exception {
+        // on a JVM without virtual threads this is the same as the platform threads
+        readPastStuckGetters(true);
+    }
+
+    private void readPastStuckGetters(boolean virtualThreads) throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        // a getter that ignores the interrupt of its timeout, as one that never returns would
+        MBeanServerConnection stuck = (MBeanServerConnection)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    while (true) {
+                        try {
+                            release.await();
+                            return null;
+                        } catch (InterruptedException e) {
+                            // still stuck
+                        }
+                    }
+                });
+        JmxConnectionFactory factory = new JmxConnectionFactory(ManagementFactory.getPlatformMBeanServer());
+        factory.setVirtualThreads(virtualThreads);
+        try {
+            int reads = JmxConnectionFactory.MAX_ATTRIBUTE_THREADS + 2;
+            List<ObjectName> names = new ArrayList<ObjectName>();
+            for (int i = 0; i < reads; i++) {
+                names.add(new ObjectName("manageql.test:type=Stuck,name=" + i));
+            }
+            List<String> warnings = new CopyOnWriteArrayList<String>();
+            AttributeFetcher fetcher = new AttributeFetcher(stuck, names.iterator(), new String[] {"Value"}, null, 1);
+            fetcher.setAttributeTimeout(10, factory.getAttributeExecutor(), factory.getSlowAttributes(),
+                    JmxNode.LOCAL, "stuck", false, warnings::add);
+            for (int i = 0; i < reads; i++) {
+                assertTrue(fetcher.next().getAttributes().isEmpty());
+            }
+            assertEquals(reads, warnings.size());
+            // each read past the cap is a timeout without a thread
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < reads; i++) {
+                expected.add(i < JmxConnectionFactory.MAX_ATTRIBUTE_THREADS
+                        ? "Attribute Value of stuck did not respond within 10 ms and is null"
+                        : "Attribute Value of stuck was not read as too many slow getters are still running");
+            }
+            assertEquals(expected, warnings);
+        } finally {
+            release.countDown();
+            factory.close();
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.junit.Test;
+
+public class JmxConnectionPoolTest {
+
+    @Test
+    public void testReconnect() throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        Registry registry = LocateRegistry.createRegistry(port);
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        JMXServiceURL url = new JMXServiceURL("service:jmx:rmi:///jndi/rmi://localhost:" + port + "/jmxrmi");
+        JMXConnectorServer server = JMXConnectorServerFactory.newJMXConnectorServer(url, null, mbs);
+        server.start();
+        JmxConnectionPool pool = new JmxConnectionPool(url, null, 2, 50);
+        try {
+            pool.connect();
+            assertEquals(2, pool.getConnectedCount());
+            ObjectName runtime = new ObjectName("java.lang:type=Runtime");
+            assertTrue(pool.getConnection().isRegistered(runtime));
+
+            CountDownLatch reconnected = new CountDownLatch(1);
+            pool.getConnection().addReconnectListener(reconnected::countDown);
+            server.stop();
+
+            // failed calls mark the connectors as failed while the server is down
+            for (int i = 0; i < 2; i++) {
+                try {
+                    pool.getConnection().isRegistered(runtime);
+                } catch (IOException e) {
+                    // expected until reconnected
+                }
+            }
+            server = JMXConnectorServerFactory.newJMXConnectorServer(url, null, mbs);
+            server.start();
+
+            assertTrue(reconnected.await(10, TimeUnit.SECONDS));
+            assertTrue(pool.getConnection().isRegistered(runtime));
+        } finally {
+            pool.close();
+            server.stop();
+            UnicastRemoteObject.unexportObject(registry, true);
+        }
+    }
+
+}
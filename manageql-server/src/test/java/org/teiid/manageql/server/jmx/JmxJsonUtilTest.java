@@ -0,0 +1,49 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+import org.teiid.core.types.JsonType;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+public class JmxJsonUtilTest {
+
+    @Test
+    public void testCompositeData() throws Exception {
+        CompositeData usage = (CompositeData)ManagementFactory.getPlatformMBeanServer().getAttribute(
+                ManagementFactory.getMemoryMXBean().getObjectName(), "HeapMemoryUsage");
+        MemoryUsage expected = MemoryUsage.from(usage);
+
+        JsonType json = (JsonType)JmxJsonUtil.converToJson(usage);
+        String value = json.getSubString(1, (int)json.length());
+        JsonObject jo = new Gson().fromJson(value, JsonObject.class);
+        assertEquals(expected.getMax(), jo.get("max").getAsLong());
+        assertEquals(expected.getUsed(), jo.get("used").getAsLong());
+        assertEquals("[1,\"a\",null,[2,3]]", JmxJsonUtil.toJson(new Object[] {1, "a", null, new long[] {2, 3}}));
+    }
+
+}
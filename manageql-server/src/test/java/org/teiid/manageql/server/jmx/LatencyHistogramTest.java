@@ -0,0 +1,51 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileNanos(.5));
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000000);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(90 * 1000 + 10 * 1000000, histogram.getTotalNanos());
+        // within a factor of two, rounded up
+        assertEquals(1024, histogram.getPercentileNanos(.5));
+        assertEquals(1024, histogram.getPercentileNanos(.9));
+        assertEquals(1 << 20, histogram.getPercentileNanos(.99));
+
+        LatencyHistogram.LatencyStats stats = histogram.getStats();
+        assertEquals(100, stats.getCount());
+        assertEquals(1048.576, stats.getMaxMicros(), 0);
+
+        histogram.reset();
+        assertEquals(0, histogram.getStats().getCount());
+    }
+
+}
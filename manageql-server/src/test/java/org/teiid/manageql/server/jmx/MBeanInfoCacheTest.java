@@ -0,0 +1,82 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MBeanInfoCacheTest {
+
+    public interface SampleMBean {
+        int getValue();
+    }
+
+    public static class Sample implements SampleMBean {
+        @Override
+        public int getValue() {
+            return 1;
+        }
+    }
+
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    MBeanInfoCache cache;
+    ObjectName first;
+    ObjectName second;
+
+    @Before
+    public void before() throws Exception {
+        cache = new MBeanInfoCache(mbs);
+        cache.start();
+        first = new ObjectName("manageql.test:type=Sample,name=first");
+        second = new ObjectName("manageql.test:type=Sample,name=second");
+        mbs.registerMBean(new Sample(), first);
+        mbs.registerMBean(new Sample(), second);
+    }
+
+    @After
+    public void after() throws Exception {
+        cache.close();
+        for (ObjectName name : new ObjectName[] {first, second}) {
+            if (mbs.isRegistered(name)) {
+                mbs.unregisterMBean(name);
+            }
+        }
+    }
+
+    @Test
+    public void testSharedAndInvalidated() throws Exception {
+        assertSame(cache.getMBeanInfo(first), cache.getMBeanInfo(second));
+        assertEquals(2, cache.size());
+
+        long generation = cache.getGeneration();
+        mbs.unregisterMBean(second);
+        assertEquals(1, cache.size());
+        assertNotEquals(generation, cache.getGeneration());
+    }
+
+}
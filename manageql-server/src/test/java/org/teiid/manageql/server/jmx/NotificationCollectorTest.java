@@ -0,0 +1,94 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class NotificationCollectorTest {
+
+    public interface EmitterMBean {
+        int getCount();
+    }
+
+    public static class Emitter extends NotificationBroadcasterSupport implements EmitterMBean {
+        private int count;
+
+        @Override
+        public int getCount() {
+            return count;
+        }
+
+        public void emit(String message) {
+            sendNotification(new Notification("manageql.test", this, ++count, message));
+        }
+    }
+
+    MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name;
+    NotificationCollector collector;
+
+    @After
+    public void after() throws Exception {
+        collector.close();
+        if (mbs.isRegistered(name)) {
+            mbs.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    public void testSubscribeOnRegistrationAndOverwrite() throws Exception {
+        name = new ObjectName("manageql.test:type=Emitter");
+        collector = new NotificationCollector(Arrays.asList(new JmxNode(JmxNode.LOCAL, mbs)),
+                NotificationCollector.parse("manageql.test:*"), 2);
+        collector.start();
+
+        Emitter emitter = new Emitter();
+        mbs.registerMBean(emitter, name);
+        assertEquals(1, collector.getSubscriptionCount());
+
+        emitter.emit("a");
+        emitter.emit("b");
+        emitter.emit("c");
+        assertEquals(3, collector.getReceived());
+        assertEquals(1, collector.getDropped());
+
+        List<NotificationCollector.Event> events = collector.getEvents(0, Long.MAX_VALUE);
+        assertEquals(2, events.size());
+        assertEquals(1, events.get(0).getSeq());
+        assertEquals("b", events.get(0).getNotification().getMessage());
+        assertEquals(name, events.get(0).getSource());
+        assertEquals(JmxNode.LOCAL, events.get(0).getNode());
+
+        events = collector.getEvents(2, Long.MAX_VALUE);
+        assertEquals(1, events.size());
+        assertEquals("c", events.get(0).getNotification().getMessage());
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.teiid.manageql.server.jmx.ColumnPredicate.Operator;
+
+public class ObjectNameFilterTest {
+
+    private static ColumnPredicate predicate(String key, Operator op, Object... values) {
+        String column = key == null ? JmxTranslator.OBJECT_NAME_COLUMN : JmxTranslator.getKeyColumnName(key);
+        return new ColumnPredicate(column, key, op, new ArrayList<Object>(Arrays.asList(values)), false, null);
+    }
+
+    private static ObjectNameFilter filter(ColumnPredicate... predicates) {
+        return new ObjectNameFilter(Arrays.asList(predicates));
+    }
+
+    @Test
+    public void testLike() throws Exception {
+        ObjectNameFilter filter = filter(predicate(null, Operator.LIKE, "%topic=orders%"));
+        assertTrue(filter.apply(new ObjectName("kafka.server:type=BrokerTopicMetrics,topic=orders")));
+        assertFalse(filter.apply(new ObjectName("kafka.server:type=BrokerTopicMetrics,topic=payments")));
+        assertEquals(Collections.singletonList(new ObjectName("kafka.server:*")),
+                filter.narrow(new ObjectName("kafka.server:*")));
+    }
+
+    @Test
+    public void testLikeEscapesRegex() {
+        assertEquals("a\\.b.*c.", ColumnPredicate.toRegex("a.b%c_", null));
+        assertEquals("a%b", ColumnPredicate.toRegex("a\\%b", '\\').replace("\\", ""));
+    }
+
+    @Test
+    public void testExactObjectNames() throws Exception {
+        ObjectNameFilter filter = filter(predicate(null, Operator.IN,
+                "java.lang:type=Runtime", "java.lang:type=Memory", "java.nio:type=BufferPool,name=direct", "not a name"));
+        assertEquals(Arrays.asList(new ObjectName("java.lang:type=Runtime"), new ObjectName("java.lang:type=Memory")),
+                filter.narrow(new ObjectName("java.lang:*")));
+    }
+
+    @Test
+    public void testKeyPropertyNarrowing() throws Exception {
+        ObjectNameFilter filter = filter(predicate("topic", Operator.EQ, "orders"),
+                predicate("partition", Operator.IN, "0", "1"));
+        List<ObjectName> patterns = filter.narrow(new ObjectName("kafka.log:type=Log,*"));
+        assertEquals(Arrays.asList(new ObjectName("kafka.log:type=Log,topic=orders,partition=0,*"),
+                new ObjectName("kafka.log:type=Log,topic=orders,partition=1,*")), patterns);
+        assertTrue(filter.apply(new ObjectName("kafka.log:type=Log,topic=orders,partition=1")));
+        assertFalse(filter.apply(new ObjectName("kafka.log:type=Log,topic=orders,partition=2")));
+        assertFalse(filter.apply(new ObjectName("kafka.log:type=Log,topic=orders")));
+    }
+
+    @Test
+    public void testKeyPropertyNotNarrowed() throws Exception {
+        ObjectName pattern = new ObjectName("kafka.log:type=Log,*");
+        // wildcard characters are literal in sql, so they can't become part of the pattern
+        assertEquals(Collections.singletonList(pattern), filter(predicate("topic", Operator.EQ, "ord*")).narrow(pattern));
+        // the key is already fixed by the pattern
+        assertEquals(Collections.singletonList(pattern), filter(predicate("type", Operator.EQ, "Log")).narrow(pattern));
+        // not a property list pattern
+        ObjectName fixed = new ObjectName("kafka.log:type=Log,topic=*");
+        assertEquals(Collections.singletonList(fixed), filter(predicate("topic", Operator.EQ, "orders")).narrow(fixed));
+    }
+
+}
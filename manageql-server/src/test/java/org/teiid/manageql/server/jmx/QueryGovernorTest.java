@@ -0,0 +1,77 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.teiid.translator.TranslatorException;
+
+public class QueryGovernorTest {
+
+    @Test
+    public void testCallsPerSecond() {
+        QueryGovernor governor = new QueryGovernor();
+        assertEquals(0, governor.tryAcquire());
+        governor.setMaxCallsPerSecond(10);
+        int allowed = 0;
+        while (governor.tryAcquire() == 0) {
+            allowed++;
+        }
+        // the burst is a second's worth of calls
+        assertTrue(allowed >= 10 && allowed <= 11);
+        assertEquals(1, governor.getThrottled());
+    }
+
+    @Test
+    public void testLimits() throws Exception {
+        QueryGovernor governor = new QueryGovernor();
+        governor.setMaxBeans(2);
+        QueryGovernor.Budget budget = governor.newBudget();
+        budget.checkBeanCount(2);
+        try {
+            budget.checkBeanCount(3);
+            fail();
+        } catch (TranslatorException e) {
+            assertEquals(1, governor.getRejected());
+        }
+
+        governor.setMaxBeans(0);
+        governor.setMaxBytes(1000);
+        budget = governor.newBudget();
+        budget.addBean(new Object[] {1L, "small"});
+        try {
+            budget.addBean(new Object[] {new long[200]});
+            fail();
+        } catch (TranslatorException e) {
+            assertEquals(2, governor.getRejected());
+        }
+    }
+
+    @Test(expected = TranslatorException.class)
+    public void testTimeout() throws Exception {
+        QueryGovernor governor = new QueryGovernor();
+        governor.setQueryTimeout(1);
+        QueryGovernor.Budget budget = governor.newBudget();
+        Thread.sleep(5);
+        budget.checkTimeout();
+    }
+
+}
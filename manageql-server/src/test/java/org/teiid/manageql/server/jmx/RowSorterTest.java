@@ -0,0 +1,79 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class RowSorterTest {
+
+    private static List<Object> firstColumn(List<List<?>> rows) {
+        List<Object> result = new ArrayList<Object>();
+        for (List<?> row : rows) {
+            result.add(row.get(0));
+        }
+        return result;
+    }
+
+    private static void addAll(RowSorter sorter, Object... values) {
+        for (Object value : values) {
+            sorter.add(Arrays.asList(value, "row" + value));
+        }
+    }
+
+    @Test
+    public void testTopN() {
+        RowSorter sorter = new RowSorter(new int[] {0}, new boolean[] {true}, 0, 3);
+        addAll(sorter, 5L, 3L, null, 9L, 1L, 7L, 8L);
+        assertFalse(sorter.isFull());
+        assertEquals(Arrays.asList(9L, 8L, 7L), firstColumn(sorter.getRows()));
+    }
+
+    @Test
+    public void testOffsetAndNullsLow() {
+        RowSorter sorter = new RowSorter(new int[] {0}, new boolean[] {false}, 1, 2);
+        addAll(sorter, 5L, 3L, null, 9L);
+        assertEquals(Arrays.asList(3L, 5L), firstColumn(sorter.getRows()));
+
+        sorter = new RowSorter(new int[] {0}, new boolean[] {false}, 0, -1);
+        addAll(sorter, "b", null, "a");
+        assertEquals(Arrays.asList(null, "a", "b"), firstColumn(sorter.getRows()));
+
+        sorter = new RowSorter(new int[] {0}, new boolean[] {false}, 5, 2);
+        addAll(sorter, 1, 2);
+        assertEquals(0, sorter.getRows().size());
+    }
+
+    @Test
+    public void testLimitWithoutOrder() {
+        RowSorter sorter = new RowSorter(new int[0], new boolean[0], 1, 2);
+        addAll(sorter, 3, 1);
+        assertFalse(sorter.isFull());
+        addAll(sorter, 2);
+        assertTrue(sorter.isFull());
+        addAll(sorter, 0);
+        assertEquals(Arrays.asList(1, 2), firstColumn(sorter.getRows()));
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.teiid.metadata.Schema;
+
+public class SchemaUpdaterTest {
+
+    @Test
+    public void retriesFailedUpdate() throws Exception {
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        AtomicInteger failures = new AtomicInteger(2);
+        MBeanServerConnection connection = (MBeanServerConnection)Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] {MBeanServerConnection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("getMBeanInfo") && failures.getAndDecrement() > 0) {
+                        throw new IOException("connection lost");
+                    }
+                    try {
+                        return method.invoke(mbs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        JmxConnectionFactory factory = new JmxConnectionFactory(connection);
+        Schema schema = new Schema();
+        schema.setName("jmx");
+        AtomicReference<Schema> published = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        SchemaUpdater updater = new SchemaUpdater(new JmxTranslator(), factory, () -> schema, s -> {
+            published.set(s);
+            latch.countDown();
+        }, 10);
+        updater.start();
+        try {
+            updater.changed(new ObjectName("java.lang:type=Runtime"));
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertNotNull(published.get().getTable("java.lang:type=Runtime"));
+            assertTrue(failures.get() < 0);
+        } finally {
+            updater.close();
+            factory.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SlowAttributesTest {
+
+    private static final long TIMEOUT = TimeUnit.MILLISECONDS.toNanos(200);
+
+    @Test
+    public void testForgottenOnceFast() {
+        SlowAttributes slow = new SlowAttributes();
+        String key = SlowAttributes.getKey("local", "d:type=T", "A");
+        assertFalse(slow.isSlow(key));
+        slow.timedOut(key);
+        slow.timedOut(key);
+        assertTrue(slow.isSlow(key));
+        assertEquals(2, slow.getTimeouts());
+
+        // still slow if only just in time
+        slow.read(key, TIMEOUT - 1, TIMEOUT);
+        assertTrue(slow.isSlow(key));
+        slow.read(key, TIMEOUT / 4, TIMEOUT);
+        assertFalse(slow.isSlow(key));
+        assertEquals(0, slow.size());
+    }
+
+    @Test
+    public void testKeysAreDistinct() {
+        SlowAttributes slow = new SlowAttributes();
+        slow.timedOut(SlowAttributes.getKey("a", "d:type=T", "A"));
+        assertFalse(slow.isSlow(SlowAttributes.getKey("b", "d:type=T", "A")));
+        assertFalse(slow.isSlow(SlowAttributes.getKey("a", "d:type=U", "A")));
+        assertFalse(slow.isSlow(SlowAttributes.getKey("a", "d:type=T", "B")));
+    }
+}
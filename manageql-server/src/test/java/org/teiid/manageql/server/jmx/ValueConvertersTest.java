@@ -0,0 +1,94 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.teiid.core.util.ObjectConverterUtil;
+
+public class ValueConvertersTest {
+
+    @Test
+    public void testConversions() throws Exception {
+        assertSame(ValueConverters.getConverter(Long[].class, Long[].class),
+                ValueConverters.getConverter(Long[].class, Long[].class));
+        assertArrayEquals(new Long[] {1L, 2L}, (Long[])ValueConverters.convert(new long[] {1, 2}, Long[].class));
+        assertArrayEquals(new String[] {"1", null}, (String[])ValueConverters.convert(new Integer[] {1, null}, String[].class));
+        assertEquals(new Timestamp(5), ValueConverters.convert(new Date(5), Timestamp.class));
+        assertEquals("a:b=c", ValueConverters.convert(new ObjectName("a:b=c"), String.class));
+        assertEquals(Integer.valueOf(3), ValueConverters.convert(3L, Integer.class));
+    }
+
+    public static class AppDate extends Date {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Test
+    public void testDoesNotRetainClassLoaders() throws Exception {
+        WeakReference<ClassLoader> loader = convertWithAppClass();
+        for (int i = 0; i < 50 && loader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull(loader.get());
+    }
+
+    /**
+     * Convert a value of a class defined by its own loader, as the classes of a monitored application are
+     */
+    private WeakReference<ClassLoader> convertWithAppClass() throws Exception {
+        String name = AppDate.class.getName();
+        byte[] bytes;
+        try (InputStream in = getClass().getResourceAsStream("/" + name.replace('.', '/') + ".class")) {
+            bytes = ObjectConverterUtil.convertToByteArray(in);
+        }
+        ClassLoader appLoader = new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String className, boolean resolve) throws ClassNotFoundException {
+                if (className.equals(name)) {
+                    synchronized (getClassLoadingLock(className)) {
+                        Class<?> result = findLoadedClass(className);
+                        if (result == null) {
+                            result = defineClass(className, bytes, 0, bytes.length);
+                        }
+                        return result;
+                    }
+                }
+                return super.loadClass(className, resolve);
+            }
+        };
+        Class<?> appClass = appLoader.loadClass(name);
+        assertNotSame(AppDate.class, appClass);
+        Object value = appClass.getConstructor().newInstance();
+        assertEquals(new Timestamp(((Date)value).getTime()), ValueConverters.convert(value, Timestamp.class));
+        return new WeakReference<ClassLoader>(appLoader);
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags and
+ * the COPYRIGHT.txt file distributed with this work.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.teiid.manageql.server.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void testFallbackBeforeJava21() {
+        // as on Java 8 to 20, where Executors has no such method
+        assertNull(VirtualThreads.find(Object.class));
+        assertNull(VirtualThreads.newExecutor(null));
+    }
+
+    @Test
+    public void testSupportedFromJava21() throws Exception {
+        String version = System.getProperty("java.specification.version");
+        int major = Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+        assertEquals(major >= 21, VirtualThreads.isSupported());
+        assertEquals(VirtualThreads.isSupported(), VirtualThreads.find(Executors.class) != null);
+
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor();
+        if (!VirtualThreads.isSupported()) {
+            assertNull(executor);
+            return;
+        }
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get();
+            assertTrue((Boolean)Thread.class.getMethod("isVirtual").invoke(thread));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}